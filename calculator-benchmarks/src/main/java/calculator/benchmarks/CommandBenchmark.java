@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.benchmarks;
+
+import calculator.Calculator;
+import calculator.command.Command;
+import calculator.command.CommandResult;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Calculator#executeCommand(Command)} for the commands that do real work, with and without parsing the
+ * command line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+    @Param({":func f {0} * {0} + 1", ":const c 2 * PI", ":s saved", ":p"})
+    public String line;
+
+    private Calculator calculator;
+
+    private Command command;
+
+    @Setup
+    public void setUp() throws Exception {
+        calculator = new Calculator();
+        for (int i = 0; i < 20; ++i) {
+            calculator.putConstant("k" + i, (double) i);
+        }
+        calculator.evaluate("1 + 2");
+        command = new Command.Builder().parse(line).build();
+    }
+
+    @Benchmark
+    public CommandResult execute() throws Exception {
+        return calculator.executeCommand(command);
+    }
+
+    @Benchmark
+    public CommandResult parseAndExecute() throws Exception {
+        return calculator.executeCommand(new Command.Builder().parse(line).build());
+    }
+}
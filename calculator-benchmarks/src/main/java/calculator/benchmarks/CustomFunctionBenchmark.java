@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.benchmarks;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.RPNFunctionRepository;
+import calculator.function.rpn.custom.CustomConstant;
+import calculator.function.rpn.custom.CustomFunction;
+import calculator.function.rpn.custom.FunctionExecutor;
+import calculator.parser.SimpleFunctionParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Functions and constants defined through {@link SimpleFunctionParser}, as the {@code :func} and {@code :const}
+ * commands do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomFunctionBenchmark {
+    private static final String POLY = "{0} * {0} + 2 * {0} + 1";
+
+    private static final String CALLS = "poly(3) + dist(1, 4) * half";
+
+    private RPNEvaluator evaluator;
+
+    private SimpleFunctionParser parser;
+
+    private CompiledExpression compiled;
+
+    @Setup
+    public void setUp() throws Exception {
+        final FunctionRepository repository = new RPNFunctionRepository();
+        evaluator = new RPNEvaluator(repository);
+        parser = new SimpleFunctionParser(new RPNEvaluator(repository));
+        repository.update("poly", new CustomFunction(parser.parse(POLY)));
+        repository.update("dist", new CustomFunction(parser.parse("max({0}, {1}) - min({0}, {1})")));
+        repository.update("half", new CustomConstant(parser.parse("PI / 2")));
+        compiled = evaluator.compile(CALLS);
+    }
+
+    @Benchmark
+    public FunctionExecutor parse() throws Exception {
+        return parser.parse(POLY);
+    }
+
+    @Benchmark
+    public double evaluate() throws Exception {
+        return evaluator.evaluate(CALLS);
+    }
+
+    @Benchmark
+    public double compiled() throws Exception {
+        return compiled.evaluate();
+    }
+}
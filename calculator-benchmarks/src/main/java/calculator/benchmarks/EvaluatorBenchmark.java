@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.benchmarks;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.function.rpn.RPNFunctionRepository;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link RPNEvaluator#evaluate(String)} compiles on every call; {@code compiled} measures evaluation alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+    @Param({Expressions.SHORT, Expressions.LONG, Expressions.NESTED})
+    public String shape;
+
+    private String expression;
+
+    private RPNEvaluator evaluator;
+
+    private CompiledExpression compiled;
+
+    @Setup
+    public void setUp() throws Exception {
+        expression = Expressions.get(shape);
+        evaluator = new RPNEvaluator(new RPNFunctionRepository());
+        compiled = evaluator.compile(expression);
+    }
+
+    @Benchmark
+    public double evaluate() throws Exception {
+        return evaluator.evaluate(expression);
+    }
+
+    @Benchmark
+    public double compiled() throws Exception {
+        return compiled.evaluate();
+    }
+}
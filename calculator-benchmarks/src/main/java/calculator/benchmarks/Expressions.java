@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.benchmarks;
+
+/**
+ * Expressions of the shapes the benchmarks are parameterized with.
+ */
+final class Expressions {
+    static final String SHORT = "short";
+
+    static final String LONG = "long";
+
+    static final String NESTED = "nested";
+
+    private static final int LONG_TERMS = 200;
+
+    private static final int NESTING_DEPTH = 50;
+
+    private Expressions() {
+    }
+
+    static String get(final String shape) {
+        switch (shape) {
+            case SHORT:
+                return "2 + 2 * 2";
+            case LONG:
+                final StringBuilder terms = new StringBuilder("1.5");
+                for (int i = 0; i < LONG_TERMS; ++i) {
+                    terms.append(i % 2 == 0 ? " + " : " * ").append(i).append(".25 - sin(").append(i % 7)
+                            .append(')');
+                }
+                return terms.toString();
+            case NESTED:
+                final StringBuilder nested = new StringBuilder();
+                for (int i = 0; i < NESTING_DEPTH; ++i) {
+                    nested.append("max(1, (");
+                }
+                nested.append("2.5");
+                for (int i = 0; i < NESTING_DEPTH; ++i) {
+                    nested.append(" + 1) * 0.5)");
+                }
+                return nested.toString();
+            default:
+                throw new IllegalArgumentException("Unknown expression shape: " + shape);
+        }
+    }
+}
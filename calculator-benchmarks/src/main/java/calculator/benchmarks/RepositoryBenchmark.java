@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.benchmarks;
+
+import calculator.exception.execute.FunctionNotDefinedException;
+import calculator.function.Function;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.RPNFunctionRepository;
+import calculator.function.rpn.builtin.DoubleConstant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up builtin, user defined and missing names in a repository of {@code definitions} user definitions, and
+ * taking snapshots of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+    @Param({"10", "1000"})
+    public int definitions;
+
+    private FunctionRepository repository;
+
+    private String userName;
+
+    @Setup
+    public void setUp() throws Exception {
+        repository = new RPNFunctionRepository();
+        for (int i = 0; i < definitions; ++i) {
+            repository.update("c" + i, new DoubleConstant(i));
+        }
+        userName = "c" + definitions / 2;
+    }
+
+    @Benchmark
+    public Function getBuiltin() throws Exception {
+        return repository.get("sin");
+    }
+
+    @Benchmark
+    public Function getUserDefined() throws Exception {
+        return repository.get(userName);
+    }
+
+    @Benchmark
+    public Function getMissing() {
+        try {
+            return repository.get("missing");
+        } catch (FunctionNotDefinedException ex) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public FunctionRepository snapshot() {
+        return repository.snapshot();
+    }
+
+    @Benchmark
+    public FunctionRepository update() throws Exception {
+        repository.update(userName, new DoubleConstant(1.0));
+        return repository;
+    }
+}
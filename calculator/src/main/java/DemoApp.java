@@ -23,6 +23,9 @@
  */
 
 import calculator.Calculator;
+import calculator.batch.BatchEvaluator;
+import calculator.batch.BatchReport;
+import calculator.batch.PipelinedBatchEvaluator;
 import calculator.command.Command;
 import calculator.command.CommandResult;
 import calculator.command.EmptyResult;
@@ -30,18 +33,152 @@ import calculator.exception.command.CommandParseException;
 import calculator.exception.command.UnknownCommandException;
 import calculator.exception.execute.ExpressionExecuteException;
 import calculator.exception.parse.FunctionParseException;
+import calculator.server.BinaryCalculatorServer;
+import calculator.server.BinaryLoadTest;
+import calculator.server.CalculatorHttpServer;
+import calculator.server.HttpLoadTest;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
 
 public final class DemoApp implements Runnable {
     public DemoApp() {
     }
 
-    public static void main(final String[] args) throws IOException {
-        DemoApp application = new DemoApp();
-        application.run();
+    private static final List<String> OPTIONS = Arrays.asList(
+            "--batch", "--out", "--threads", "--serve", "--load-test", "--requests", "--serve-binary",
+            "--binary-load-test", "--window");
+
+    /**
+     * Starts the interactive mode when there are no arguments. Otherwise:
+     * <ul>
+     * <li>{@code --batch input --out output [--threads n]} evaluates a whole file, on several threads if asked to,
+     * with the same output either way: commands and lines using {@code ans} wait for the lines before them,</li>
+     * <li>{@code --serve port} runs the HTTP evaluation service,</li>
+     * <li>{@code --load-test port [--threads n] [--requests n]} measures the latency of a service on this machine,</li>
+     * <li>{@code --serve-binary port} runs the binary evaluation service,</li>
+     * <li>{@code --binary-load-test port [--threads n] [--requests n] [--window n]} measures the throughput of a
+     * binary service on this machine.</li>
+     * </ul>
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            DemoApp application = new DemoApp();
+            application.run();
+            return;
+        }
+        final Map<String, String> options = parseOptions(args);
+        if (options.containsKey("--batch")) {
+            runBatch(options);
+        } else if (options.containsKey("--serve")) {
+            serve(options);
+        } else if (options.containsKey("--load-test")) {
+            runLoadTest(options);
+        } else if (options.containsKey("--serve-binary")) {
+            serveBinary(options);
+        } else if (options.containsKey("--binary-load-test")) {
+            runBinaryLoadTest(options);
+        } else {
+            exitWithUsage();
+        }
+    }
+
+    private static void runBatch(final Map<String, String> options) throws IOException {
+        final String input = options.get("--batch");
+        final String output = options.get("--out");
+        if (output == null) {
+            exitWithUsage();
+        }
+        final int threads = getPositive(options, "--threads", 1);
+        final Calculator calculator = new Calculator();
+        final BatchReport report = threads > 1 ?
+                new PipelinedBatchEvaluator(calculator, threads).run(Paths.get(input), Paths.get(output)) :
+                new BatchEvaluator(calculator).run(Paths.get(input), Paths.get(output));
+        System.err.println(report);
+    }
+
+    private static void serve(final Map<String, String> options) throws IOException {
+        if (System.getProperty(CalculatorHttpServer.NO_DELAY_PROPERTY) == null) {
+            System.setProperty(CalculatorHttpServer.NO_DELAY_PROPERTY, "true");
+        }
+        final CalculatorHttpServer server = new CalculatorHttpServer(
+                new InetSocketAddress(getPositive(options, "--serve", 0)));
+        server.start();
+        System.err.println("Listening on " + server.getAddress() + CalculatorHttpServer.EVALUATE_PATH);
+    }
+
+    private static void runLoadTest(final Map<String, String> options) throws IOException, InterruptedException {
+        final URL url = new URL("http", "localhost", getPositive(options, "--load-test", 0),
+                CalculatorHttpServer.EVALUATE_PATH);
+        final HttpLoadTest loadTest = new HttpLoadTest(url, getPositive(options, "--threads", 8),
+                getPositive(options, "--requests", 1000));
+        System.err.println(loadTest.run("text/plain", "2 * sin(1) + 3 ^ 2\n"));
+    }
+
+    private static void serveBinary(final Map<String, String> options) throws IOException {
+        final BinaryCalculatorServer server = new BinaryCalculatorServer(
+                new InetSocketAddress(getPositive(options, "--serve-binary", 0)), new Calculator());
+        server.start();
+        System.err.println("Listening on " + server.getAddress());
+    }
+
+    private static void runBinaryLoadTest(final Map<String, String> options)
+            throws IOException, InterruptedException {
+        final BinaryLoadTest loadTest = new BinaryLoadTest(
+                new InetSocketAddress("localhost", getPositive(options, "--binary-load-test", 0)),
+                getPositive(options, "--threads", 8), getPositive(options, "--requests", 100000),
+                getPositive(options, "--window", 256));
+        System.err.println(loadTest.run("2 * sin(1) + 3 ^ 2"));
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        if (args.length % 2 != 0) {
+            exitWithUsage();
+        }
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!OPTIONS.contains(args[i])) {
+                exitWithUsage();
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        return options;
+    }
+
+    private static int getPositive(final Map<String, String> options, final String name, final int defaultValue) {
+        final String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            final int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // reported below
+        }
+        exitWithUsage();
+        return 0;
+    }
+
+    private static void exitWithUsage() {
+        System.err.println("Usage: DemoApp [--batch <input file> --out <output file> [--threads <n>]]");
+        System.err.println("       DemoApp --serve <port>");
+        System.err.println("       DemoApp --load-test <port> [--threads <n>] [--requests <per thread>]");
+        System.err.println("       DemoApp --serve-binary <port>");
+        System.err.println("       DemoApp --binary-load-test <port> [--threads <n>] [--requests <per thread>]" +
+                " [--window <n>]");
+        System.exit(2);
     }
 
     private String readExpression(final BufferedReader reader) {
@@ -65,6 +202,11 @@ public final class DemoApp implements Runnable {
     @Override
     public void run() {
         final Calculator calc = new Calculator();
+        try {
+            calc.getMetrics().registerMBean();
+        } catch (JMException ex) {
+            ex.printStackTrace();
+        }
 
         final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, Charset.forName("UTF-8")));
         String line = readExpression(reader);
@@ -27,25 +27,48 @@ import calculator.command.Command;
 import calculator.command.CommandResult;
 import calculator.command.EmptyResult;
 import calculator.command.FunctionListResult;
+import calculator.command.StatsResult;
+import calculator.evaluator.CachingEvaluator;
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.EvaluationResult;
 import calculator.evaluator.Evaluator;
+import calculator.evaluator.PreparedExpression;
 import calculator.evaluator.rpn.RPNEvaluator;
 import calculator.exception.command.UnknownCommandException;
 import calculator.exception.execute.ExpressionExecuteException;
 import calculator.exception.parse.FunctionParseException;
+import calculator.function.Function;
 import calculator.function.FunctionRepository;
 import calculator.function.rpn.RPNFunctionRepository;
 import calculator.function.rpn.builtin.DoubleConstant;
+import calculator.function.rpn.custom.CompiledFunctionExecutor;
 import calculator.function.rpn.custom.CustomConstant;
 import calculator.function.rpn.custom.CustomFunction;
 import calculator.function.rpn.custom.FunctionExecutor;
+import calculator.function.rpn.custom.ResultConstant;
+import calculator.metrics.EvaluationMetrics;
+import calculator.metrics.ExpressionLatencies;
 import calculator.parser.FunctionParser;
 import calculator.parser.SimpleFunctionParser;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheStats;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Calculator {
     @VisibleForTesting
     static final String ANS = "ans";
 
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private final CachingEvaluator cachingEvaluator;
+
+    private final EvaluationMetrics metrics = new EvaluationMetrics();
+
     private Evaluator evaluator;
 
     private Evaluator helperEvaluator;
@@ -54,28 +77,131 @@ public class Calculator {
 
     private FunctionParser functionParser;
 
+    private final ResultConstant answer = new ResultConstant();
+
     public Calculator() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize maximum number of compiled expressions kept for reuse
+     */
+    public Calculator(final int cacheSize) {
         functionRepository = new RPNFunctionRepository();
-        evaluator = new RPNEvaluator(functionRepository);
-        helperEvaluator = new RPNEvaluator(functionRepository);
-        functionParser = new SimpleFunctionParser(helperEvaluator);
+        cachingEvaluator = new CachingEvaluator(new RPNEvaluator(functionRepository, metrics), cacheSize);
+        evaluator = cachingEvaluator;
+        helperEvaluator = new RPNEvaluator(functionRepository, metrics);
+        final SimpleFunctionParser parser = new SimpleFunctionParser(helperEvaluator);
+        functionParser = parser;
+        defineAnswer();
+        metrics.addListener(new Runnable() {
+            @Override
+            public void run() {
+                cachingEvaluator.invalidateAll();
+                parser.invalidateAll();
+            }
+        });
     }
 
     private double actualResult = 0.0;
 
     public void evaluate(final String expression) throws ExpressionExecuteException {
         try {
-            actualResult = evaluator.evaluate(expression);
-            functionRepository.update(ANS, new DoubleConstant(actualResult));
+            recordResult(timedEvaluate(expression));
         } catch (ExpressionExecuteException ex) {
-            actualResult = Double.NaN;
+            recordFailure();
             throw ex;
-        } catch (FunctionParseException ex) {
-            actualResult = Double.NaN;
-            throw new ExpressionExecuteException(expression, ex);
         }
     }
 
+    /**
+     * Stores the value of an expression evaluated with {@link #calculate(String)} as the result and {@code ans}, the
+     * same way {@link #evaluate(String)} does.
+     */
+    public void recordResult(final double result) {
+        actualResult = result;
+        answer.setValue(result);
+        defineAnswer();
+    }
+
+    /**
+     * Records an expression that failed, as {@link #evaluate(String)} does: the result becomes NaN while {@code ans}
+     * keeps the last value.
+     */
+    public void recordFailure() {
+        actualResult = Double.NaN;
+    }
+
+    /**
+     * Evaluates an expression without updating the result and {@code ans}, so that one calculator can serve any
+     * number of threads.
+     */
+    public double calculate(final String expression) throws ExpressionExecuteException {
+        return timedEvaluate(expression);
+    }
+
+    /**
+     * Same as {@link #calculate(String)}, but returns failures instead of throwing them, so that invalid expressions
+     * cost no more than valid ones.
+     */
+    public EvaluationResult tryCalculate(final String expression) {
+        final ExpressionLatencies latencies = metrics.getLatencies();
+        if (!latencies.isEnabled()) {
+            return evaluator.tryEvaluate(expression);
+        }
+        final long start = System.nanoTime();
+        final EvaluationResult result = evaluator.tryEvaluate(expression);
+        latencies.record(expression, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Evaluates the expression, recording its latency while metrics are enabled.
+     */
+    private double timedEvaluate(final String expression) throws ExpressionExecuteException {
+        final ExpressionLatencies latencies = metrics.getLatencies();
+        if (!latencies.isEnabled()) {
+            return evaluator.evaluate(expression);
+        }
+        final long start = System.nanoTime();
+        try {
+            return evaluator.evaluate(expression);
+        } finally {
+            latencies.record(expression, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Compiles the expression, or returns an {@link calculator.evaluator.InvalidExpression} reporting why it cannot
+     * be, which is cached like valid ones.
+     */
+    public CompiledExpression tryCompile(final String expression) {
+        return evaluator.tryCompile(expression);
+    }
+
+    public PreparedExpression prepare(final String expression, final String... variables)
+            throws ExpressionExecuteException {
+        return evaluator.prepare(expression, variables);
+    }
+
+    public CacheStats getCacheStats() {
+        return cachingEvaluator.getStats();
+    }
+
+    /**
+     * Number of cached expressions discarded because the definitions they were compiled against changed.
+     */
+    public long getCacheInvalidationCount() {
+        return cachingEvaluator.getInvalidationCount();
+    }
+
+    /**
+     * Evaluation metrics, disabled until switched on here, through JMX or with {@code :stats on}.
+     */
+    public EvaluationMetrics getMetrics() {
+        return metrics;
+    }
+
     public double getResult() {
         return actualResult;
     }
@@ -94,13 +220,65 @@ public class Calculator {
         functionRepository.update(name, new DoubleConstant(value));
     }
 
+    /**
+     * Names whose value may depend on the last result: {@code ans} and every user definition whose body refers to
+     * one of them. Bodies that are not compiled programs are assumed to.
+     */
+    public Set<String> getAnswerReaders() {
+        final Map<String, List<String>> dependencies = new HashMap<>();
+        final Set<String> readers = new HashSet<>();
+        readers.add(ANS);
+        for (final Map.Entry<String, Function> entry : functionRepository.getFunctions().entrySet()) {
+            final Function function = entry.getValue();
+            final FunctionExecutor executor = function instanceof CustomFunction ?
+                    ((CustomFunction) function).getExecutor() : function instanceof CustomConstant ?
+                    ((CustomConstant) function).getExecutor() : null;
+            if (executor instanceof CompiledFunctionExecutor) {
+                try {
+                    dependencies.put(entry.getKey(),
+                            ((CompiledFunctionExecutor) executor).getProgram().getDependencyNames());
+                } catch (ExpressionExecuteException ex) {
+                    // an invalid body fails whatever ans is
+                }
+            } else if (!(function instanceof DoubleConstant)) {
+                readers.add(entry.getKey());
+            }
+        }
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (final Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+                if (!readers.contains(entry.getKey()) && !Collections.disjoint(readers, entry.getValue())) {
+                    readers.add(entry.getKey());
+                    added = true;
+                }
+            }
+        }
+        return readers;
+    }
+
     public void deleteFunctionOrConstant(final String name) {
         functionRepository.delete(name);
     }
 
     public void clear() throws FunctionParseException {
         actualResult = 0.0;
-        functionRepository.update("ans", new DoubleConstant(actualResult));
+        answer.setValue(actualResult);
+        defineAnswer();
+    }
+
+    /**
+     * Binds {@code ans} to the result slot unless it already is, so the definitions are only copied when
+     * {@code ans} was deleted or redefined.
+     */
+    private void defineAnswer() {
+        if (functionRepository.getFunctions().get(ANS) != answer) {
+            try {
+                functionRepository.update(ANS, answer);
+            } catch (FunctionParseException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
     }
 
     public void clearAll() throws FunctionParseException {
@@ -134,6 +312,27 @@ public class Calculator {
                 return new FunctionListResult(functionRepository.getFunctions());
             case PrintBuiltin:
                 return new FunctionListResult(functionRepository.getBuiltinFunctions());
+            case Stats:
+                return executeStats(command.getParam());
+            default:
+                throw new UnknownCommandException();
+        }
+    }
+
+    private CommandResult executeStats(final String action) throws UnknownCommandException {
+        if (action == null) {
+            return new StatsResult(metrics.report());
+        }
+        switch (action) {
+            case "on":
+                metrics.setEnabled(true);
+                return new EmptyResult();
+            case "off":
+                metrics.setEnabled(false);
+                return new EmptyResult();
+            case "reset":
+                metrics.reset();
+                return new EmptyResult();
             default:
                 throw new UnknownCommandException();
         }
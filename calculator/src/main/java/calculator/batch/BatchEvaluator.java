@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import calculator.Calculator;
+import calculator.command.Command;
+import calculator.command.CommandResult;
+import calculator.command.EmptyResult;
+import calculator.exception.command.CommandParseException;
+import calculator.exception.command.UnknownCommandException;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.parse.FunctionParseException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Evaluates a file of expressions and {@code :} commands, one per line, the way the interactive mode does: every
+ * expression gives one output line with its result, commands only when they print something. A line that fails gives
+ * an {@code error:} line and does not stop the run. Blank lines are skipped and {@code exit} ends the input.
+ */
+public final class BatchEvaluator {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    static final String ERROR_PREFIX = "error: ";
+
+    private final Calculator calculator;
+
+    private final int bufferSize;
+
+    public BatchEvaluator(final Calculator calculator) {
+        this(calculator, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BatchEvaluator(final Calculator calculator, final int bufferSize) {
+        this.calculator = calculator;
+        this.bufferSize = bufferSize;
+    }
+
+    public BatchReport run(final Path input, final Path output) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            return run(in, out);
+        }
+    }
+
+    public BatchReport run(final ReadableByteChannel input, final WritableByteChannel output) throws IOException {
+        final long start = System.nanoTime();
+        final LineReader reader = new LineReader(input, bufferSize);
+        final ResultWriter writer = new ResultWriter(output, bufferSize);
+        long expressions = 0;
+        long commands = 0;
+        long errors = 0;
+
+        String line = reader.readLine();
+        while (line != null && !isExit(line)) {
+            if (!isBlank(line)) {
+                if (isCommand(line)) {
+                    ++commands;
+                } else {
+                    ++expressions;
+                }
+                final String result = evaluateLine(calculator, line);
+                if (result != null) {
+                    if (result.startsWith(ERROR_PREFIX)) {
+                        ++errors;
+                    }
+                    writer.writeLine(result);
+                }
+            }
+            line = reader.readLine();
+        }
+        writer.flush();
+        return new BatchReport(expressions, commands, errors, reader.getBytesRead(), writer.getBytesWritten(),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Evaluates one expression or command.
+     *
+     * @return the line to print, {@code null} if there is none
+     */
+    public static String evaluateLine(final Calculator calculator, final String line) {
+        try {
+            if (isCommand(line)) {
+                final CommandResult result = calculator.executeCommand(new Command.Builder().parse(line).build());
+                return result instanceof EmptyResult ? null : result.getStringRepresentation();
+            }
+            calculator.evaluate(line);
+            return String.valueOf(calculator.getResult());
+        } catch (ExpressionExecuteException | FunctionParseException | UnknownCommandException |
+                CommandParseException ex) {
+            return ERROR_PREFIX + describe(ex);
+        }
+    }
+
+    public static boolean isCommand(final String line) {
+        return line.startsWith(":");
+    }
+
+    public static boolean isExit(final String line) {
+        return "exit".equalsIgnoreCase(line);
+    }
+
+    public static boolean isBlank(final String line) {
+        for (int i = 0; i < line.length(); ++i) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the exception's type and message, followed by those of its causes
+     */
+    public static String describe(final Throwable ex) {
+        final StringBuilder description = new StringBuilder(ex.getClass().getSimpleName());
+        if (ex.getMessage() != null) {
+            description.append(' ').append(ex.getMessage());
+        }
+        if (ex.getCause() != null && ex.getCause() != ex) {
+            description.append(": ").append(describe(ex.getCause()));
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Totals of one batch run.
+ */
+public final class BatchReport {
+    private final long expressions;
+
+    private final long commands;
+
+    private final long errors;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private final long elapsedNanos;
+
+    public BatchReport(final long expressions, final long commands, final long errors, final long bytesRead,
+            final long bytesWritten, final long elapsedNanos) {
+        this.expressions = expressions;
+        this.commands = commands;
+        this.errors = errors;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getExpressions() {
+        return expressions;
+    }
+
+    public long getCommands() {
+        return commands;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsed(final TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getLinesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : (expressions + commands) * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        final double seconds = elapsedNanos / 1e9;
+        return String.format(Locale.ROOT,
+                "%d expressions, %d commands, %d errors in %.3f s: %.0f lines/s, %.1f MB/s read, %.1f MB/s written",
+                expressions, commands, errors, seconds, getLinesPerSecond(),
+                seconds == 0 ? 0.0 : bytesRead / seconds / 1e6, seconds == 0 ? 0.0 : bytesWritten / seconds / 1e6);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the UTF-8 content of a channel into lines, reading it in large blocks. Both {@code \n} and {@code \r\n}
+ * end a line.
+ */
+public final class LineReader {
+    private final ReadableByteChannel channel;
+
+    private ByteBuffer buffer;
+
+    private boolean endOfInput = false;
+
+    private long bytesRead = 0;
+
+    public LineReader(final ReadableByteChannel channel, final int bufferSize) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(bufferSize);
+        buffer.flip();
+    }
+
+    /**
+     * @return the next line without its terminator, or {@code null} at the end of the input
+     */
+    public String readLine() throws IOException {
+        int scanned = buffer.position();
+        while (true) {
+            final byte[] array = buffer.array();
+            for (int i = scanned; i < buffer.limit(); ++i) {
+                if (array[i] == '\n') {
+                    final int end = i > buffer.position() && array[i - 1] == '\r' ? i - 1 : i;
+                    final String line = decode(array, buffer.position(), end);
+                    buffer.position(i + 1);
+                    return line;
+                }
+            }
+            if (endOfInput) {
+                if (!buffer.hasRemaining()) {
+                    return null;
+                }
+                final String line = decode(array, buffer.position(), buffer.limit());
+                buffer.position(buffer.limit());
+                return line;
+            }
+            scanned = buffer.remaining();
+            fill();
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            // a line longer than the buffer
+            final ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        final int read = channel.read(buffer);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            bytesRead += read;
+        }
+        buffer.flip();
+    }
+
+    private static String decode(final byte[] array, final int from, final int to) {
+        return new String(array, from, to - from, StandardCharsets.UTF_8);
+    }
+}
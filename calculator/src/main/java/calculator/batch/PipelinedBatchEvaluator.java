@@ -0,0 +1,347 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import calculator.Calculator;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.tokenizer.ExpressionScanner;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates a file like {@link BatchEvaluator}, on several cores. The calling thread reads the input and cuts it into
+ * numbered chunks of lines, worker threads evaluate the chunks through the calculator's thread-safe
+ * {@link Calculator#calculate(String)} and a writer thread puts the results back in input order.
+ * <p>
+ * Commands and expressions whose value may depend on {@code ans} are barriers: the reader waits until every earlier
+ * line has been evaluated, records the result of the last one as the calculator's result and {@code ans}, and
+ * evaluates the barrier itself. An expression depends on {@code ans} if it refers to it or to a user definition
+ * whose body does, see {@link Calculator#getAnswerReaders()}. Definitions thus take effect exactly where they appear
+ * in the file, and every line sees the same values as in {@link BatchEvaluator}.
+ */
+public final class PipelinedBatchEvaluator {
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final Pattern ANS = Pattern.compile("\\bans\\b");
+
+    private final Calculator calculator;
+
+    private final int workers;
+
+    private final int chunkSize;
+
+    private final int bufferSize;
+
+    public PipelinedBatchEvaluator(final Calculator calculator, final int workers) {
+        this(calculator, workers, DEFAULT_CHUNK_SIZE, BatchEvaluator.DEFAULT_BUFFER_SIZE);
+    }
+
+    public PipelinedBatchEvaluator(final Calculator calculator, final int workers, final int chunkSize,
+            final int bufferSize) {
+        if (workers < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Workers and chunk size must be positive");
+        }
+        this.calculator = calculator;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.bufferSize = bufferSize;
+    }
+
+    public BatchReport run(final Path input, final Path output) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            return run(in, out);
+        }
+    }
+
+    public BatchReport run(final ReadableByteChannel input, final WritableByteChannel output) throws IOException {
+        final long start = System.nanoTime();
+        final LineReader reader = new LineReader(input, bufferSize);
+        final Pipeline pipeline = new Pipeline(new ResultWriter(output, bufferSize));
+        final Thread writerThread = new Thread(pipeline, "batch-writer");
+        writerThread.start();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long expressions = 0;
+        long commands = 0;
+        Set<String> answerReaders = calculator.getAnswerReaders();
+        try {
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line = reader.readLine();
+            while (line != null && !BatchEvaluator.isExit(line) && pipeline.failure == null) {
+                if (BatchEvaluator.isBlank(line)) {
+                    // skipped, as in sequential mode
+                } else if (BatchEvaluator.isCommand(line) || referencesAnswer(line, answerReaders)) {
+                    final boolean command = BatchEvaluator.isCommand(line);
+                    if (command) {
+                        ++commands;
+                    } else {
+                        ++expressions;
+                    }
+                    pipeline.submit(executor, lines);
+                    lines = new ArrayList<>(chunkSize);
+                    pipeline.awaitEvaluated();
+                    pipeline.complete(BatchEvaluator.evaluateLine(calculator, line));
+                    if (command) {
+                        answerReaders = calculator.getAnswerReaders();
+                    }
+                } else {
+                    ++expressions;
+                    lines.add(line);
+                    if (lines.size() == chunkSize) {
+                        pipeline.submit(executor, lines);
+                        lines = new ArrayList<>(chunkSize);
+                    }
+                }
+                line = reader.readLine();
+            }
+            pipeline.submit(executor, lines);
+            pipeline.awaitEvaluated();
+            pipeline.finish();
+            writerThread.join();
+        } catch (InterruptedException ex) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch evaluation interrupted");
+        } finally {
+            executor.shutdownNow();
+            writerThread.interrupt();
+        }
+        pipeline.rethrowFailure();
+        return new BatchReport(expressions, commands, pipeline.errors, reader.getBytesRead(),
+                pipeline.writer.getBytesWritten(), System.nanoTime() - start);
+    }
+
+    /**
+     * @param answerReaders names whose value may depend on {@code ans}; when there is only {@code ans} itself, the
+     *      line is only searched for it
+     */
+    private static boolean referencesAnswer(final String line, final Set<String> answerReaders) {
+        if (answerReaders.size() == 1) {
+            return line.contains("ans") && ANS.matcher(line).find();
+        }
+        final ExpressionScanner scanner = new ExpressionScanner(line);
+        while (scanner.next()) {
+            if (scanner.getKind() == ExpressionScanner.Kind.Symbol && answerReaders.contains(scanner.getText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Chunk {
+        private final long sequence;
+
+        private final List<String> results;
+
+        private final boolean last;
+
+        Chunk(final long sequence, final List<String> results, final boolean last) {
+            this.sequence = sequence;
+            this.results = results;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Hands chunks from the reader through the workers to the writer. The number of chunks between reading and
+     * writing is bounded, so the input is never held in memory as a whole.
+     */
+    private final class Pipeline implements Runnable {
+        private final ResultWriter writer;
+
+        private final BlockingQueue<Chunk> evaluated = new LinkedBlockingQueue<>();
+
+        private final Semaphore inFlight = new Semaphore(CHUNKS_PER_WORKER * workers);
+
+        private final Semaphore evaluations = new Semaphore(0);
+
+        /**
+         * Chunks submitted since the last barrier, in input order.
+         */
+        private final List<Evaluation> pending = new ArrayList<>();
+
+        private long nextSequence = 0;
+
+        private long errors = 0;
+
+        private volatile Throwable failure;
+
+        Pipeline(final ResultWriter writer) {
+            this.writer = writer;
+        }
+
+        void submit(final ExecutorService executor, final List<String> lines) throws InterruptedException {
+            if (lines.isEmpty()) {
+                return;
+            }
+            inFlight.acquire();
+            final Evaluation evaluation = new Evaluation(nextSequence++, lines);
+            pending.add(evaluation);
+            executor.execute(evaluation);
+        }
+
+        /**
+         * Waits for the submitted chunks and leaves the calculator's result and {@code ans} as if they had been
+         * evaluated in order.
+         */
+        void awaitEvaluated() throws InterruptedException {
+            evaluations.acquire(pending.size());
+            for (final Evaluation evaluation : pending) {
+                if (evaluation.answered) {
+                    calculator.recordResult(evaluation.answer);
+                }
+                if (evaluation.failed) {
+                    calculator.recordFailure();
+                }
+            }
+            pending.clear();
+        }
+
+        void complete(final String result) throws InterruptedException {
+            inFlight.acquire();
+            final List<String> results = new ArrayList<>(1);
+            if (result != null) {
+                results.add(result);
+            }
+            evaluated.add(new Chunk(nextSequence++, results, false));
+        }
+
+        void finish() {
+            evaluated.add(new Chunk(nextSequence++, new ArrayList<String>(0), true));
+        }
+
+        @Override
+        public void run() {
+            final Map<Long, Chunk> waiting = new HashMap<>();
+            long sequence = 0;
+            try {
+                while (true) {
+                    final Chunk chunk = evaluated.take();
+                    waiting.put(chunk.sequence, chunk);
+                    for (Chunk next = waiting.remove(sequence); next != null; next = waiting.remove(sequence)) {
+                        if (next.last) {
+                            writer.flush();
+                            return;
+                        }
+                        write(next);
+                        ++sequence;
+                        inFlight.release();
+                    }
+                }
+            } catch (IOException | RuntimeException | Error ex) {
+                failure = ex;
+                // keep the reader from waiting for space forever
+                inFlight.release(Integer.MAX_VALUE / 2);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(final Chunk chunk) throws IOException {
+            if (failure != null) {
+                return;
+            }
+            for (final String result : chunk.results) {
+                if (result.startsWith(BatchEvaluator.ERROR_PREFIX)) {
+                    ++errors;
+                }
+                writer.writeLine(result);
+            }
+        }
+
+        /**
+         * Evaluates one chunk on a worker, keeping the last value and whether the last line failed.
+         */
+        private final class Evaluation implements Runnable {
+            private final long sequence;
+
+            private final List<String> lines;
+
+            private boolean answered;
+
+            private double answer;
+
+            private boolean failed;
+
+            Evaluation(final long sequence, final List<String> lines) {
+                this.sequence = sequence;
+                this.lines = lines;
+            }
+
+            @Override
+            public void run() {
+                final List<String> results = new ArrayList<>(lines.size());
+                try {
+                    for (final String line : lines) {
+                        try {
+                            answer = calculator.calculate(line);
+                            answered = true;
+                            failed = false;
+                            results.add(String.valueOf(answer));
+                        } catch (ExpressionExecuteException ex) {
+                            failed = true;
+                            results.add(BatchEvaluator.ERROR_PREFIX + BatchEvaluator.describe(ex));
+                        }
+                    }
+                } catch (RuntimeException | Error ex) {
+                    failure = ex;
+                } finally {
+                    evaluated.add(new Chunk(sequence, results, false));
+                    evaluations.release();
+                }
+            }
+        }
+
+        void rethrowFailure() throws IOException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes lines in UTF-8 to a channel through a large buffer. Nothing reaches the channel before the buffer fills up
+ * or {@link #flush()} is called.
+ */
+public final class ResultWriter {
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private long bytesWritten = 0;
+
+    public ResultWriter(final WritableByteChannel channel, final int bufferSize) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    public void writeLine(final String line) throws IOException {
+        final int length = line.length();
+        if (buffer.remaining() < length + 1) {
+            flush();
+        }
+        if (buffer.remaining() < 3 * length + 1) {
+            // may not fit once encoded
+            write(line.getBytes(StandardCharsets.UTF_8));
+            write(new byte[] {'\n'});
+            return;
+        }
+        final byte[] array = buffer.array();
+        int position = buffer.position();
+        for (int i = 0; i < length; ++i) {
+            final char c = line.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(position);
+                buffer.put(line.substring(i).getBytes(StandardCharsets.UTF_8));
+                position = buffer.position();
+                break;
+            }
+            array[position++] = (byte) c;
+        }
+        array[position++] = '\n';
+        buffer.position(position);
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void write(final byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            final int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+}
@@ -37,6 +37,7 @@ public class Command {
         Delete("del"),
         Clear("c|clear"),
         ClearAll("ce|clearall"),
+        Stats("stats"),
         Unknown(".*");
 
         private final Pattern pattern;
@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.FunctionRepository;
+import calculator.jfr.EvaluateEvent;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluator keeping a bounded cache of compiled expressions, keyed by their text. An entry is recompiled when a
+ * function or constant it was bound to has been redefined or deleted since; such a lookup counts both as a hit and as
+ * an invalidation.
+ * <p>
+ * The cache is a segmented LRU, so that a scan of expressions used once does not flush the frequently used ones: a
+ * newly compiled expression enters a probation segment of a fifth of the size, and moves to the main segment when
+ * it is used again while still there. Each segment evicts its least recently used entry.
+ */
+public class CachingEvaluator implements Evaluator {
+    private final Evaluator evaluator;
+
+    private final Cache<String, CompiledExpression> probation;
+
+    private final Cache<String, CompiledExpression> main;
+
+    private final boolean promoting;
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    public CachingEvaluator(final Evaluator evaluator, final long maximumSize) {
+        this.evaluator = evaluator;
+        final long probationSize = Math.min(Math.max(1, maximumSize / 5), maximumSize);
+        this.probation = CacheBuilder.newBuilder().maximumSize(probationSize).recordStats().build();
+        this.main = CacheBuilder.newBuilder().maximumSize(maximumSize - probationSize).recordStats().build();
+        this.promoting = maximumSize > probationSize;
+    }
+
+    @Override
+    public double evaluate(final String expression) throws ExpressionExecuteException {
+        final EvaluateEvent event = new EvaluateEvent();
+        event.begin();
+        final CompiledExpression compiled = tryCompile(expression);
+        boolean failed = true;
+        try {
+            final double result = compiled.evaluate();
+            failed = false;
+            return result;
+        } finally {
+            event.record(expression, compiled, failed);
+        }
+    }
+
+    @Override
+    public CompiledExpression compile(final String expression) throws ExpressionExecuteException {
+        CompiledExpression compiled = getCached(expression);
+        if (compiled instanceof InvalidExpression) {
+            throw ((InvalidExpression) compiled).toException();
+        }
+        if (compiled == null) {
+            compiled = evaluator.compile(expression);
+            put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    @Override
+    public CompiledExpression compile(final String expression, final FunctionRepository definitions)
+            throws ExpressionExecuteException {
+        return evaluator.compile(expression, definitions);
+    }
+
+    /**
+     * Invalid expressions are cached as well, until they become {@linkplain CompiledExpression#isStale() stale}.
+     */
+    @Override
+    public CompiledExpression tryCompile(final String expression) {
+        CompiledExpression compiled = getCached(expression);
+        if (compiled == null) {
+            compiled = evaluator.tryCompile(expression);
+            put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    @Override
+    public EvaluationResult tryEvaluate(final String expression) {
+        final EvaluateEvent event = new EvaluateEvent();
+        event.begin();
+        final CompiledExpression compiled = tryCompile(expression);
+        final EvaluationResult result = EvaluationResult.of(compiled);
+        event.record(expression, compiled, !result.isSuccess());
+        return result;
+    }
+
+    private CompiledExpression getCached(final String expression) {
+        CompiledExpression compiled = main.getIfPresent(expression);
+        if (compiled == null) {
+            compiled = probation.getIfPresent(expression);
+            if (compiled != null && promoting) {
+                probation.invalidate(expression);
+                main.put(expression, compiled);
+            }
+        }
+        if (compiled != null && compiled.isStale()) {
+            invalidationCount.incrementAndGet();
+            return null;
+        }
+        return compiled;
+    }
+
+    /**
+     * Stores a compiled expression where the stale one it replaces was, or in probation if it is new.
+     */
+    private void put(final String expression, final CompiledExpression compiled) {
+        if (main.asMap().containsKey(expression)) {
+            main.put(expression, compiled);
+        } else {
+            probation.put(expression, compiled);
+        }
+    }
+
+    /**
+     * Not cached: prepared expressions are meant to be kept by the caller.
+     */
+    @Override
+    public PreparedExpression prepare(final String expression, final String... variables)
+            throws ExpressionExecuteException {
+        return evaluator.prepare(expression, variables);
+    }
+
+    /**
+     * Lookups that found the expression in either segment are hits; moving an entry between segments is not an
+     * eviction.
+     */
+    public CacheStats getStats() {
+        final CacheStats probationStats = probation.stats();
+        final CacheStats mainStats = main.stats();
+        return new CacheStats(mainStats.hitCount() + probationStats.hitCount(), probationStats.missCount(), 0, 0, 0,
+                mainStats.evictionCount() + probationStats.evictionCount());
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public long size() {
+        return main.size() + probation.size();
+    }
+
+    public void invalidateAll() {
+        probation.invalidateAll();
+        main.invalidateAll();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import java.util.List;
+
+/**
+ * Expression that has already been tokenized and resolved, ready to be executed repeatedly without parsing.
+ * Instances are immutable; functions and constants are bound at compile time.
+ */
+public interface CompiledExpression {
+    int getNumberOfParams();
+
+    double evaluate() throws ExpressionExecuteException;
+
+    double evaluate(final double[] params) throws ExpressionExecuteException;
+
+    /**
+     * Evaluates the expression for every row of the parameter columns: {@code results[i]} is the value for
+     * parameters {@code params[0][i]}, {@code params[1][i]}, and so on. Every column must have at least
+     * {@code results.length} values.
+     */
+    void evaluate(final double[][] params, final double[] results) throws ExpressionExecuteException;
+
+    /**
+     * Evaluates rows {@code from} (inclusive) to {@code to} (exclusive) of the parameter columns into the same range
+     * of {@code results}, see {@link #evaluate(double[][], double[])}. Only that range of {@code results} is written.
+     */
+    void evaluate(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException;
+
+    /**
+     * Executes the expression as a function body: the top {@link #getNumberOfParams()} values of the stack are the
+     * arguments and are replaced by the result.
+     */
+    void execute(final DoubleStack stack) throws ExpressionExecuteException;
+
+    /**
+     * Checks whether any user defined function or constant this expression was bound to has since been redefined
+     * or deleted.
+     */
+    boolean isStale();
+
+    /**
+     * @return names of the user defined functions and constants this expression was bound to, as checked by
+     *      {@link #isStale()}
+     */
+    List<String> getDependencyNames();
+
+    /**
+     * @return number of tokens the expression was compiled from; for an invalid expression, the number of tokens
+     *      read up to the error
+     */
+    int getTokenCount();
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.FunctionNotDefinedException;
+import calculator.exception.execute.NotEnoughParametersException;
+import calculator.exception.execute.StackUnderflowException;
+
+/**
+ * Value of an expression, or the reason it has none. Returned by the {@code try} methods of evaluators, which
+ * report invalid expressions without creating any exception.
+ */
+public final class EvaluationResult {
+    public static enum Error {
+        /**
+         * A symbol is neither a function nor a constant; {@link #getToken()} is its name.
+         */
+        UndefinedFunction,
+        /**
+         * An operator or function at {@link #getPosition()} has fewer operands than it needs, or, if the position is
+         * the length of the expression, the expression has no value.
+         */
+        NotEnoughParameters,
+        /**
+         * Any other failure, such as an error in the body of a user defined function.
+         */
+        Failed
+    }
+
+    private final double value;
+
+    private final Error error;
+
+    private final int position;
+
+    private final String token;
+
+    private EvaluationResult(final double value, final Error error, final int position, final String token) {
+        this.value = value;
+        this.error = error;
+        this.position = position;
+        this.token = token;
+    }
+
+    public static EvaluationResult success(final double value) {
+        return new EvaluationResult(value, null, -1, null);
+    }
+
+    /**
+     * @param position offset of the offending token in the expression, or -1 if unknown
+     * @param token text of the offending token, or {@code null}
+     */
+    public static EvaluationResult failure(final Error error, final int position, final String token) {
+        return new EvaluationResult(Double.NaN, error, position, token);
+    }
+
+    /**
+     * Describes a failure that was already reported with an exception.
+     */
+    public static EvaluationResult failure(final ExpressionExecuteException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StackUnderflowException) {
+                return failure(Error.NotEnoughParameters, ((StackUnderflowException) cause).getPosition(), null);
+            }
+            if (cause instanceof NotEnoughParametersException) {
+                return failure(Error.NotEnoughParameters, -1, null);
+            }
+            if (cause instanceof FunctionNotDefinedException) {
+                return failure(Error.UndefinedFunction, -1, cause.getMessage());
+            }
+        }
+        return failure(Error.Failed, -1, null);
+    }
+
+    /**
+     * Evaluates an expression returned by a {@code tryCompile} method; only failures during evaluation, which
+     * verified expressions do not have unless a user defined function they call is invalid, create exceptions.
+     */
+    public static EvaluationResult of(final CompiledExpression compiled) {
+        if (compiled instanceof InvalidExpression) {
+            return ((InvalidExpression) compiled).getFailure();
+        }
+        try {
+            return success(compiled.evaluate());
+        } catch (ExpressionExecuteException ex) {
+            return failure(ex);
+        }
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the value, or {@code NaN} if evaluation failed
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return the reason of the failure, or {@code null} on success
+     */
+    public Error getError() {
+        return error;
+    }
+
+    /**
+     * @return offset of the offending token in the expression, or -1 if unknown or on success
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return text of the offending token, or {@code null} if unknown or on success
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return the exception {@code compile} reports the failure with, wrapped by the evaluator in an
+     *      {@link ExpressionExecuteException} of the whole expression
+     */
+    public ExpressionExecuteException toException(final String expression) {
+        switch (error) {
+            case UndefinedFunction:
+                return new FunctionNotDefinedException(token);
+            case NotEnoughParameters:
+                return position >= 0 ? new StackUnderflowException(expression, position) :
+                        new NotEnoughParametersException(expression, null);
+            default:
+                return new ExpressionExecuteException(expression, null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (isSuccess()) {
+            return String.valueOf(value);
+        }
+        final StringBuilder description = new StringBuilder(error.name());
+        if (token != null) {
+            description.append(' ').append(token);
+        }
+        if (position >= 0) {
+            description.append(" at ").append(position);
+        }
+        return description.toString();
+    }
+}
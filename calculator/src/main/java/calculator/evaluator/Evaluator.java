@@ -24,7 +24,40 @@
 package calculator.evaluator;
 
 import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.FunctionRepository;
 
+/**
+ * Implementations keep all evaluation state local to a call, and the expressions they compile are immutable, so one
+ * instance can be shared by any number of threads.
+ */
 public interface Evaluator {
     double evaluate(final String expression) throws ExpressionExecuteException;
+
+    CompiledExpression compile(final String expression) throws ExpressionExecuteException;
+
+    /**
+     * Same as {@link #compile(String)}, but resolves symbols in the given {@linkplain FunctionRepository#snapshot()
+     * snapshot} of the repository, e.g. the one of the evaluation calling a function body. The result is not cached.
+     */
+    CompiledExpression compile(final String expression, final FunctionRepository definitions)
+            throws ExpressionExecuteException;
+
+    /**
+     * Same as {@link #compile(String)}, except that an expression that cannot be compiled is returned as an
+     * {@link InvalidExpression} instead of being reported with an exception.
+     */
+    CompiledExpression tryCompile(final String expression);
+
+    /**
+     * Same as {@link #evaluate(String)}, except that failures are returned instead of thrown; invalid expressions
+     * are reported without creating any exception.
+     */
+    EvaluationResult tryEvaluate(final String expression);
+
+    /**
+     * Compiles an expression whose free identifiers are variables bound at evaluation time. The given variables
+     * take the first slots, in order, and may shadow defined functions and constants; any other identifier that is
+     * not defined gets the next free slot in order of appearance. Parameters ({@code {0}}) refer to the same slots.
+     */
+    PreparedExpression prepare(final String expression, final String... variables) throws ExpressionExecuteException;
 }
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+import calculator.function.FunctionRepository;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Returned by {@code tryCompile} for an expression that cannot be compiled. Evaluating it throws what
+ * {@code compile} would have thrown; the exception is only created then.
+ */
+public final class InvalidExpression implements CompiledExpression {
+    private final String expression;
+
+    private final EvaluationResult failure;
+
+    private final FunctionRepository repository;
+
+    private final Map<String, Function> definitions;
+
+    private final int tokenCount;
+
+    /**
+     * Creates an expression that is always stale, so that it is never reused.
+     */
+    public InvalidExpression(final String expression, final EvaluationResult failure) {
+        this(expression, failure, 0, null, null);
+    }
+
+    /**
+     * @param tokenCount number of tokens read up to the error
+     * @param definitions the {@linkplain FunctionRepository#getFunctions() user definitions} of the repository the
+     *      expression was compiled against; the expression is stale as soon as they are replaced
+     */
+    public InvalidExpression(final String expression, final EvaluationResult failure,
+            final int tokenCount, final FunctionRepository repository, final Map<String, Function> definitions) {
+        this.expression = expression;
+        this.failure = failure;
+        this.tokenCount = tokenCount;
+        this.repository = repository;
+        this.definitions = definitions;
+    }
+
+    public EvaluationResult getFailure() {
+        return failure;
+    }
+
+    public ExpressionExecuteException toException() {
+        return new ExpressionExecuteException(expression, failure.toException(expression));
+    }
+
+    @Override
+    public int getNumberOfParams() {
+        return 0;
+    }
+
+    @Override
+    public double evaluate() throws ExpressionExecuteException {
+        throw toException();
+    }
+
+    @Override
+    public double evaluate(final double[] params) throws ExpressionExecuteException {
+        throw toException();
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results) throws ExpressionExecuteException {
+        throw toException();
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException {
+        throw toException();
+    }
+
+    @Override
+    public void execute(final DoubleStack stack) throws ExpressionExecuteException {
+        throw toException();
+    }
+
+    @Override
+    public List<String> getDependencyNames() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * The expression may become valid whenever functions are defined or deleted. Storing a result in {@code ans}
+     * does not replace the definitions, so it keeps failures cached.
+     */
+    @Override
+    public boolean isStale() {
+        return repository == null || repository.getFunctions() != definitions;
+    }
+}
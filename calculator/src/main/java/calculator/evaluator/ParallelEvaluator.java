@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates compiled expressions over parameter columns on a fork/join pool. The rows are split into chunks, each
+ * evaluated by its own task with its own scratch state and writing its own range of the results. Chunks are large
+ * enough that neighbouring tasks can only share the cache lines at their boundaries.
+ * <p>
+ * Functions evaluated row by row (those without column kernels) are called from several threads at once.
+ */
+public final class ParallelEvaluator {
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+
+    private final int chunkSize;
+
+    public ParallelEvaluator(final ForkJoinPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelEvaluator(final ForkJoinPool pool, final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Same as {@link CompiledExpression#evaluate(double[][], double[])}, but parallel. If evaluation of any chunk
+     * fails, the contents of {@code results} are undefined.
+     */
+    public void evaluate(final CompiledExpression expression, final double[][] params, final double[] results)
+            throws ExpressionExecuteException {
+        if (results.length <= chunkSize) {
+            expression.evaluate(params, results);
+            return;
+        }
+        try {
+            pool.invoke(new EvaluationTask(expression, params, results, 0, results.length));
+        } catch (EvaluationFailure failure) {
+            throw failure.getCause();
+        }
+    }
+
+    private final class EvaluationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledExpression expression;
+
+        private final double[][] params;
+
+        private final double[] results;
+
+        private final int from;
+
+        private final int to;
+
+        EvaluationTask(final CompiledExpression expression, final double[][] params, final double[] results,
+                final int from, final int to) {
+            this.expression = expression;
+            this.params = params;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            final int chunks = (to - from + chunkSize - 1) / chunkSize;
+            if (chunks > 1) {
+                final int middle = from + chunks / 2 * chunkSize;
+                invokeAll(new EvaluationTask(expression, params, results, from, middle),
+                        new EvaluationTask(expression, params, results, middle, to));
+                return;
+            }
+            try {
+                expression.evaluate(params, results, from, to);
+            } catch (ExpressionExecuteException ex) {
+                throw new EvaluationFailure(ex);
+            }
+        }
+    }
+
+    /**
+     * Carries a checked exception out of a fork/join task.
+     */
+    private static final class EvaluationFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        EvaluationFailure(final ExpressionExecuteException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized ExpressionExecuteException getCause() {
+            return (ExpressionExecuteException) super.getCause();
+        }
+    }
+}
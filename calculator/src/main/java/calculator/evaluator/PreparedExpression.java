@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled expression with named variables. Every variable is an alias of the parameter slot with the same index,
+ * so values are bound positionally, in the order of {@link #getVariableNames()}, or by name.
+ */
+public final class PreparedExpression {
+    private final CompiledExpression expression;
+
+    private final List<String> variableNames;
+
+    public PreparedExpression(final CompiledExpression expression, final List<String> variableNames) {
+        this.expression = expression;
+        this.variableNames = Collections.unmodifiableList(new ArrayList<>(variableNames));
+    }
+
+    public CompiledExpression getExpression() {
+        return expression;
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    /**
+     * @return slot of the variable, or -1 if the expression has no such variable
+     */
+    public int getVariableIndex(final String name) {
+        return variableNames.indexOf(name);
+    }
+
+    public double evaluate(final double... values) throws ExpressionExecuteException {
+        return expression.evaluate(values);
+    }
+
+    /**
+     * Evaluates the expression for every row of the variable columns, see
+     * {@link CompiledExpression#evaluate(double[][], double[])}.
+     */
+    public void evaluate(final double[][] columns, final double[] results) throws ExpressionExecuteException {
+        expression.evaluate(columns, results);
+    }
+
+    public double evaluate(final Map<String, Double> values) throws ExpressionExecuteException {
+        final double[] params = new double[variableNames.size()];
+        for (int i = 0; i < params.length; ++i) {
+            final Double value = values.get(variableNames.get(i));
+            if (value == null) {
+                throw new IllegalArgumentException("No value bound to variable: " + variableNames.get(i));
+            }
+            params[i] = value;
+        }
+        return expression.evaluate(params);
+    }
+}
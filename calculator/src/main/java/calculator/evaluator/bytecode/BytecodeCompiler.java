@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.bytecode;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.Function;
+import calculator.function.rpn.builtin.BinaryOperatorFunction;
+import calculator.function.rpn.builtin.BuiltinConstant;
+import calculator.function.rpn.builtin.BuiltinFunction;
+import calculator.function.rpn.builtin.DoubleConstant;
+import calculator.function.rpn.custom.CompiledFunctionExecutor;
+import calculator.function.rpn.custom.CustomConstant;
+import calculator.function.rpn.custom.CustomFunction;
+import calculator.function.rpn.custom.FunctionExecutor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Translates an {@link RPNProgram} into a JVM class whose {@code eval(double[])} method performs the whole
+ * computation on the JVM operand stack. Builtin operators and functions become arithmetic instructions or direct
+ * calls to {@link Math}, custom functions and constants are inlined, and anything else is called through
+ * {@link GeneratedExpression}. Every class is defined by its own class loader, so it is unloaded as soon as the
+ * expression is no longer referenced.
+ * <p>
+ * Programs that cannot be translated (stack underflow, recursive definitions, methods exceeding JVM limits) are
+ * returned unchanged, so the interpreter reports their errors exactly as before.
+ */
+public final class BytecodeCompiler {
+    private static final String MATH = "java/lang/Math";
+
+    private static final String UNARY = "(D)D";
+
+    private static final String BINARY = "(DD)D";
+
+    private static final String SUPER_NAME = GeneratedExpression.class.getName().replace('.', '/');
+
+    private static final String CLASS_NAME_PREFIX = SUPER_NAME + "$";
+
+    private static final String CONSTRUCTOR_DESCRIPTOR = "([Lcalculator/function/Function;)V";
+
+    private static final String EVAL_DESCRIPTOR = "([D)D";
+
+    private static final String CALL_DESCRIPTOR = "(I[D)D";
+
+    private static final int FIRST_FREE_LOCAL = 2;
+
+    private static final int CALL_STACK_OVERHEAD = 8;
+
+    private static final Map<Class<?>, Integer> OPERATORS = new HashMap<>();
+
+    private static final Map<Class<?>, String> MATH_FUNCTIONS = new HashMap<>();
+
+    private static final Map<Class<?>, Double> CONSTANTS = new HashMap<>();
+
+    private static final AtomicLong classCounter = new AtomicLong();
+
+    static {
+        OPERATORS.put(BinaryOperatorFunction.Add.class, ClassFileWriter.DADD);
+        OPERATORS.put(BinaryOperatorFunction.Substract.class, ClassFileWriter.DSUB);
+        OPERATORS.put(BinaryOperatorFunction.Multiply.class, ClassFileWriter.DMUL);
+        OPERATORS.put(BinaryOperatorFunction.Divide.class, ClassFileWriter.DDIV);
+        OPERATORS.put(BinaryOperatorFunction.Modulo.class, ClassFileWriter.DREM);
+        OPERATORS.put(BuiltinFunction.Negation.class, ClassFileWriter.DNEG);
+
+        MATH_FUNCTIONS.put(BinaryOperatorFunction.Power.class, "pow");
+        MATH_FUNCTIONS.put(BuiltinFunction.Sin.class, "sin");
+        MATH_FUNCTIONS.put(BuiltinFunction.Cos.class, "cos");
+        MATH_FUNCTIONS.put(BuiltinFunction.Tan.class, "tan");
+        MATH_FUNCTIONS.put(BuiltinFunction.ArcSin.class, "asin");
+        MATH_FUNCTIONS.put(BuiltinFunction.ArcCos.class, "acos");
+        MATH_FUNCTIONS.put(BuiltinFunction.ArcTan.class, "atan");
+        MATH_FUNCTIONS.put(BuiltinFunction.ArcTan2.class, "atan2");
+        MATH_FUNCTIONS.put(BuiltinFunction.SinHyperbolic.class, "sinh");
+        MATH_FUNCTIONS.put(BuiltinFunction.CosHyperbolic.class, "cosh");
+        MATH_FUNCTIONS.put(BuiltinFunction.TanHyperbolic.class, "tanh");
+        MATH_FUNCTIONS.put(BuiltinFunction.AbsoluteValue.class, "abs");
+        MATH_FUNCTIONS.put(BuiltinFunction.Log.class, "log");
+        MATH_FUNCTIONS.put(BuiltinFunction.Exp.class, "exp");
+        MATH_FUNCTIONS.put(BuiltinFunction.Signum.class, "signum");
+        MATH_FUNCTIONS.put(BuiltinFunction.SquareRoot.class, "sqrt");
+        MATH_FUNCTIONS.put(BuiltinFunction.DegreesToRadians.class, "toRadians");
+        MATH_FUNCTIONS.put(BuiltinFunction.RadiansToDegrees.class, "toDegrees");
+        MATH_FUNCTIONS.put(BuiltinFunction.Min.class, "min");
+        MATH_FUNCTIONS.put(BuiltinFunction.Max.class, "max");
+
+        CONSTANTS.put(BuiltinConstant.Pi.class, Math.PI);
+        CONSTANTS.put(BuiltinConstant.E.class, Math.E);
+    }
+
+    public CompiledExpression compile(final CompiledExpression expression) {
+        if (expression instanceof RPNProgram) {
+            return compile((RPNProgram)expression);
+        }
+        return expression;
+    }
+
+    public CompiledExpression compile(final RPNProgram program) {
+        final String className = CLASS_NAME_PREFIX + classCounter.incrementAndGet();
+        final Generator generator = new Generator(className);
+        try {
+            final byte[] classFile = generator.generate(program);
+            final Class<?> generatedClass = new ExpressionClassLoader(GeneratedExpression.class.getClassLoader())
+                    .define(className.replace('/', '.'), classFile);
+            final Function[] functions = generator.fallbackFunctions.toArray(
+                    new Function[generator.fallbackFunctions.size()]);
+            final GeneratedExpression generated = (GeneratedExpression)generatedClass
+                    .getConstructor(Function[].class).newInstance((Object)functions);
+            return new BytecodeExpression(program, generator.inlined.toArray(
+                    new RPNProgram[generator.inlined.size()]), generated);
+        } catch (NotCompilableException | IllegalStateException ex) {
+            return program;
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                InvocationTargetException ex) {
+            throw new IllegalStateException("Cannot instantiate generated expression " + className, ex);
+        }
+    }
+
+    private static final class Generator {
+        private final ClassFileWriter writer;
+
+        private final List<Function> fallbackFunctions = new ArrayList<>();
+
+        private final List<RPNProgram> inlined = new ArrayList<>();
+
+        private final List<Function> inlining = new ArrayList<>();
+
+        private ClassFileWriter.Method method;
+
+        private int depth = 0;
+
+        private int maxDepth = 0;
+
+        private int floor = 0;
+
+        private int nextLocal = FIRST_FREE_LOCAL;
+
+        private Generator(final String className) {
+            writer = new ClassFileWriter(className, SUPER_NAME);
+        }
+
+        private byte[] generate(final RPNProgram program) throws NotCompilableException {
+            writer.method(ClassFileWriter.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR)
+                    .op(ClassFileWriter.ALOAD_0)
+                    .op(ClassFileWriter.ALOAD_1)
+                    .invokeSpecial(SUPER_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR)
+                    .op(ClassFileWriter.RETURN)
+                    .setMaxs(2, 2);
+
+            method = writer.method(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL, "eval", EVAL_DESCRIPTOR);
+            emitProgram(program, null);
+            method.op(ClassFileWriter.DRETURN);
+            method.setMaxs(2 * maxDepth + CALL_STACK_OVERHEAD, nextLocal);
+            return writer.toByteArray();
+        }
+
+        /**
+         * Emits the program leaving exactly its result on the operand stack. Parameters are read from the
+         * {@code vars} argument for the top level program, and from local variables for inlined bodies.
+         */
+        private void emitProgram(final RPNProgram program, final int[] paramLocals) throws NotCompilableException {
+            final int start = depth;
+            final int[] tempLocals = new int[program.getNumberOfTemps()];
+            for (int i = 0; i < tempLocals.length; ++i) {
+                tempLocals[i] = allocateLocal();
+            }
+            for (int i = 0; i < program.getLength(); ++i) {
+                final int operand = program.getOperand(i);
+                switch (program.getOpcode(i)) {
+                    case RPNProgram.OP_PUSH:
+                        method.pushDouble(program.getConstant(operand));
+                        push();
+                        break;
+                    case RPNProgram.OP_LOAD:
+                        if (paramLocals == null) {
+                            method.op(ClassFileWriter.ALOAD_1).pushInt(operand).op(ClassFileWriter.DALOAD);
+                        } else {
+                            method.loadDouble(paramLocals[operand]);
+                        }
+                        push();
+                        break;
+                    case RPNProgram.OP_CALL:
+                        emitCall(program.getFunction(operand));
+                        break;
+                    case RPNProgram.OP_STORE:
+                        method.op(ClassFileWriter.DUP2).storeDouble(tempLocals[operand]);
+                        break;
+                    case RPNProgram.OP_RELOAD:
+                        method.loadDouble(tempLocals[operand]);
+                        push();
+                        break;
+                    default:
+                        throw new NotCompilableException();
+                }
+            }
+
+            final int produced = depth - start;
+            if (produced < 1) {
+                throw new NotCompilableException();
+            }
+            if (produced > 1) {
+                final int result = allocateLocal();
+                method.storeDouble(result);
+                for (int i = 1; i < produced; ++i) {
+                    method.op(ClassFileWriter.POP2);
+                }
+                method.loadDouble(result);
+                depth = start + 1;
+            }
+        }
+
+        private void emitCall(final Function function) throws NotCompilableException {
+            final int params = function.getNumberOfParams();
+            pop(params);
+
+            final Integer operator = OPERATORS.get(function.getClass());
+            if (operator != null) {
+                method.op(operator);
+                push();
+                return;
+            }
+            final String mathFunction = MATH_FUNCTIONS.get(function.getClass());
+            if (mathFunction != null) {
+                method.invokeStatic(MATH, mathFunction, params == 1 ? UNARY : BINARY);
+                push();
+                return;
+            }
+            final Double constant = CONSTANTS.get(function.getClass());
+            if (constant != null) {
+                method.pushDouble(constant);
+                push();
+                return;
+            }
+            if (function instanceof DoubleConstant) {
+                method.pushDouble(((DoubleConstant)function).getValue());
+                push();
+                return;
+            }
+
+            final RPNProgram body = getBody(function);
+            if (body != null && body.getNumberOfParams() == params) {
+                emitInlined(function, body, params);
+            } else {
+                emitFallback(function, params);
+            }
+        }
+
+        private void emitInlined(final Function function, final RPNProgram body, final int params)
+                throws NotCompilableException {
+            if (inlining.contains(function)) {
+                throw new NotCompilableException();
+            }
+            final int[] locals = storeArguments(params);
+            final int callerFloor = floor;
+            floor = depth;
+            inlining.add(function);
+            emitProgram(body, locals);
+            inlining.remove(inlining.size() - 1);
+            floor = callerFloor;
+            inlined.add(body);
+        }
+
+        private void emitFallback(final Function function, final int params) {
+            final int[] locals = storeArguments(params);
+            fallbackFunctions.add(function);
+            method.op(ClassFileWriter.ALOAD_0)
+                    .pushInt(fallbackFunctions.size() - 1)
+                    .pushInt(params)
+                    .newDoubleArray();
+            for (int i = 0; i < params; ++i) {
+                method.op(ClassFileWriter.DUP).pushInt(i).loadDouble(locals[i]).op(ClassFileWriter.DASTORE);
+            }
+            method.invokeVirtual(SUPER_NAME, "call", CALL_DESCRIPTOR);
+            push();
+        }
+
+        private int[] storeArguments(final int params) {
+            final int[] locals = new int[params];
+            for (int i = 0; i < params; ++i) {
+                locals[i] = allocateLocal();
+            }
+            for (int i = params - 1; i >= 0; --i) {
+                method.storeDouble(locals[i]);
+            }
+            return locals;
+        }
+
+        private RPNProgram getBody(final Function function) {
+            FunctionExecutor executor = null;
+            if (function instanceof CustomFunction) {
+                executor = ((CustomFunction)function).getExecutor();
+            } else if (function instanceof CustomConstant) {
+                executor = ((CustomConstant)function).getExecutor();
+            }
+            if (!(executor instanceof CompiledFunctionExecutor)) {
+                return null;
+            }
+            try {
+                CompiledExpression body = ((CompiledFunctionExecutor)executor).getProgram();
+                if (body instanceof BytecodeExpression) {
+                    body = ((BytecodeExpression)body).getSource();
+                }
+                return body instanceof RPNProgram ? (RPNProgram)body : null;
+            } catch (ExpressionExecuteException ex) {
+                return null;
+            }
+        }
+
+        private int allocateLocal() {
+            final int local = nextLocal;
+            nextLocal += 2;
+            return local;
+        }
+
+        private void push() {
+            ++depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void pop(final int count) throws NotCompilableException {
+            if (depth - count < floor) {
+                throw new NotCompilableException();
+            }
+            depth -= count;
+        }
+    }
+
+    private static final class ExpressionClassLoader extends ClassLoader {
+        private ExpressionClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(final String name, final byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+
+    private static final class NotCompilableException extends Exception {
+        private NotCompilableException() {
+            super(null, null, false, false);
+        }
+    }
+}
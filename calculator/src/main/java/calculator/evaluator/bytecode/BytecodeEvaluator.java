@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.bytecode;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.EvaluationResult;
+import calculator.evaluator.Evaluator;
+import calculator.evaluator.InvalidExpression;
+import calculator.evaluator.PreparedExpression;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.FunctionRepository;
+
+/**
+ * Evaluator compiling expressions to JVM bytecode. Compilation is considerably more expensive than with
+ * {@link RPNEvaluator}, so this backend pays off for expressions compiled once and evaluated many times.
+ */
+public class BytecodeEvaluator implements Evaluator {
+    private final Evaluator rpnEvaluator;
+
+    private final BytecodeCompiler compiler = new BytecodeCompiler();
+
+    public BytecodeEvaluator(final FunctionRepository functionRepository) {
+        this.rpnEvaluator = new RPNEvaluator(functionRepository);
+    }
+
+    @Override
+    public double evaluate(final String expression) throws ExpressionExecuteException {
+        return compile(expression).evaluate();
+    }
+
+    @Override
+    public CompiledExpression compile(final String expression) throws ExpressionExecuteException {
+        return compiler.compile(rpnEvaluator.compile(expression));
+    }
+
+    @Override
+    public CompiledExpression compile(final String expression, final FunctionRepository definitions)
+            throws ExpressionExecuteException {
+        return compiler.compile(rpnEvaluator.compile(expression, definitions));
+    }
+
+    @Override
+    public CompiledExpression tryCompile(final String expression) {
+        final CompiledExpression compiled = rpnEvaluator.tryCompile(expression);
+        return compiled instanceof InvalidExpression ? compiled : compiler.compile(compiled);
+    }
+
+    @Override
+    public EvaluationResult tryEvaluate(final String expression) {
+        return EvaluationResult.of(tryCompile(expression));
+    }
+
+    @Override
+    public PreparedExpression prepare(final String expression, final String... variables)
+            throws ExpressionExecuteException {
+        final PreparedExpression prepared = rpnEvaluator.prepare(expression, variables);
+        return new PreparedExpression(compiler.compile(prepared.getExpression()), prepared.getVariableNames());
+    }
+}
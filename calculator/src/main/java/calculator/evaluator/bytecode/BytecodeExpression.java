@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.bytecode;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.DoubleStack;
+import java.util.EmptyStackException;
+import java.util.List;
+
+final class BytecodeExpression implements CompiledExpression {
+    private static final double[] NO_PARAMS = new double[0];
+
+    private final RPNProgram source;
+
+    private final RPNProgram[] inlined;
+
+    private final GeneratedExpression generated;
+
+    BytecodeExpression(final RPNProgram source, final RPNProgram[] inlined, final GeneratedExpression generated) {
+        this.source = source;
+        this.inlined = inlined;
+        this.generated = generated;
+    }
+
+    RPNProgram getSource() {
+        return source;
+    }
+
+    @Override
+    public int getNumberOfParams() {
+        return source.getNumberOfParams();
+    }
+
+    @Override
+    public double evaluate() throws ExpressionExecuteException {
+        return evaluate(NO_PARAMS);
+    }
+
+    @Override
+    public double evaluate(final double[] params) throws ExpressionExecuteException {
+        if (params.length < getNumberOfParams()) {
+            throw new ExpressionExecuteException(source.getExpression(),
+                    new NotEnoughParametersException(source.getExpression(), new EmptyStackException()));
+        }
+        try {
+            return generated.eval(params);
+        } catch (NotEnoughParametersException ex) {
+            throw new ExpressionExecuteException(source.getExpression(), ex);
+        }
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results) throws ExpressionExecuteException {
+        evaluate(params, results, 0, results.length);
+    }
+
+    /**
+     * Evaluates row by row: the generated code is already free of dispatch, so there is nothing to gain from
+     * processing columns.
+     */
+    @Override
+    public void evaluate(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException {
+        if (params.length < getNumberOfParams()) {
+            throw new ExpressionExecuteException(source.getExpression(),
+                    new NotEnoughParametersException(source.getExpression(), new EmptyStackException()));
+        }
+        for (final double[] column : params) {
+            if (column.length < to) {
+                throw new IllegalArgumentException("Parameter column shorter than results: " + column.length);
+            }
+        }
+        final double[] row = new double[params.length];
+        try {
+            for (int i = from; i < to; ++i) {
+                for (int j = 0; j < row.length; ++j) {
+                    row[j] = params[j][i];
+                }
+                results[i] = generated.eval(row);
+            }
+        } catch (NotEnoughParametersException ex) {
+            throw new ExpressionExecuteException(source.getExpression(), ex);
+        }
+    }
+
+    @Override
+    public void execute(final DoubleStack stack) throws ExpressionExecuteException {
+        final double[] args = new double[getNumberOfParams()];
+        try {
+            for (int i = args.length - 1; i >= 0; --i) {
+                args[i] = stack.pop();
+            }
+        } catch (EmptyStackException e) {
+            throw new NotEnoughParametersException(source.getExpression(), e);
+        }
+        stack.push(evaluate(args));
+    }
+
+    @Override
+    public List<String> getDependencyNames() {
+        return source.getDependencyNames();
+    }
+
+    @Override
+    public int getTokenCount() {
+        return source.getTokenCount();
+    }
+
+    @Override
+    public boolean isStale() {
+        if (source.isStale()) {
+            return true;
+        }
+        for (final RPNProgram body : inlined) {
+            if (body.isStale()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
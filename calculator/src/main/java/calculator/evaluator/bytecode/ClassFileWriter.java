@@ -0,0 +1,392 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class file assembler covering exactly what {@link BytecodeCompiler} emits: a public final class with
+ * straight-line methods using double arithmetic, static and virtual calls. Straight-line code needs no stack map
+ * frames, so version 50 class files are produced.
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+
+    static final int ACC_FINAL = 0x0010;
+
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ALOAD_0 = 0x2a;
+
+    static final int ALOAD_1 = 0x2b;
+
+    static final int DALOAD = 0x31;
+
+    static final int DASTORE = 0x52;
+
+    static final int POP2 = 0x58;
+
+    static final int DUP = 0x59;
+
+    static final int DUP2 = 0x5c;
+
+    static final int DADD = 0x63;
+
+    static final int DSUB = 0x67;
+
+    static final int DMUL = 0x6b;
+
+    static final int DDIV = 0x6f;
+
+    static final int DREM = 0x73;
+
+    static final int DNEG = 0x77;
+
+    static final int DRETURN = 0xaf;
+
+    static final int RETURN = 0xb1;
+
+    private static final int MAGIC = 0xcafebabe;
+
+    private static final int MAJOR_VERSION = 50;
+
+    private static final int TAG_UTF8 = 1;
+
+    private static final int TAG_INTEGER = 3;
+
+    private static final int TAG_DOUBLE = 6;
+
+    private static final int TAG_CLASS = 7;
+
+    private static final int TAG_METHODREF = 10;
+
+    private static final int TAG_NAME_AND_TYPE = 12;
+
+    private static final int LDC_W = 0x13;
+
+    private static final int LDC2_W = 0x14;
+
+    private static final int BIPUSH = 0x10;
+
+    private static final int SIPUSH = 0x11;
+
+    private static final int ICONST_0 = 0x03;
+
+    private static final int DLOAD = 0x18;
+
+    private static final int DSTORE = 0x39;
+
+    private static final int INVOKEVIRTUAL = 0xb6;
+
+    private static final int INVOKESPECIAL = 0xb7;
+
+    private static final int INVOKESTATIC = 0xb8;
+
+    private static final int NEWARRAY = 0xbc;
+
+    private static final int T_DOUBLE = 7;
+
+    private static final int WIDE = 0xc4;
+
+    private static final int MAX_U2 = 65535;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+
+    private int poolCount = 1;
+
+    private final List<Method> methods = new ArrayList<>();
+
+    private final int thisClass;
+
+    private final int superClass;
+
+    ClassFileWriter(final String className, final String superName) {
+        thisClass = classRef(className);
+        superClass = classRef(superName);
+    }
+
+    Method method(final int access, final String name, final String descriptor) {
+        final Method method = new Method(access, utf8(name), utf8(descriptor));
+        methods.add(method);
+        return method;
+    }
+
+    byte[] toByteArray() {
+        try {
+            final int codeAttribute = utf8("Code");
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (final Method method : methods) {
+                method.writeTo(out, codeAttribute);
+            }
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private int utf8(final String value) {
+        final String key = "U" + value;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(TAG_UTF8);
+                pool.writeUTF(value);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            index = register(key, 1);
+        }
+        return index;
+    }
+
+    private int classRef(final String internalName) {
+        final String key = "C" + internalName;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            final int name = utf8(internalName);
+            writeEntry(TAG_CLASS, name);
+            index = register(key, 1);
+        }
+        return index;
+    }
+
+    private int methodRef(final String owner, final String name, final String descriptor) {
+        final String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            final int ownerIndex = classRef(owner);
+            final int nameIndex = utf8(name);
+            final int descriptorIndex = utf8(descriptor);
+            final String natKey = "N" + name + descriptor;
+            Integer nameAndType = poolIndex.get(natKey);
+            if (nameAndType == null) {
+                writeEntry(TAG_NAME_AND_TYPE, nameIndex, descriptorIndex);
+                nameAndType = register(natKey, 1);
+            }
+            writeEntry(TAG_METHODREF, ownerIndex, nameAndType);
+            index = register(key, 1);
+        }
+        return index;
+    }
+
+    private int doubleConstant(final double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final String key = "D" + bits;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(TAG_DOUBLE);
+                pool.writeLong(bits);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            index = register(key, 2);
+        }
+        return index;
+    }
+
+    private int intConstant(final int value) {
+        final String key = "I" + value;
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                pool.writeByte(TAG_INTEGER);
+                pool.writeInt(value);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            index = register(key, 1);
+        }
+        return index;
+    }
+
+    private void writeEntry(final int tag, final int... indices) {
+        try {
+            pool.writeByte(tag);
+            for (final int index : indices) {
+                pool.writeShort(index);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private int register(final String key, final int slots) {
+        final int index = poolCount;
+        poolCount += slots;
+        if (poolCount > MAX_U2) {
+            throw new IllegalStateException("Constant pool too large");
+        }
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    final class Method {
+        private final int access;
+
+        private final int name;
+
+        private final int descriptor;
+
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+        private int maxStack;
+
+        private int maxLocals;
+
+        private Method(final int access, final int name, final int descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        Method op(final int opcode) {
+            code.write(opcode);
+            return this;
+        }
+
+        Method pushInt(final int value) {
+            if (value >= -1 && value <= 5) {
+                code.write(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.write(SIPUSH);
+                writeShort(value);
+            } else {
+                code.write(LDC_W);
+                writeShort(intConstant(value));
+            }
+            return this;
+        }
+
+        Method pushDouble(final double value) {
+            code.write(LDC2_W);
+            writeShort(doubleConstant(value));
+            return this;
+        }
+
+        Method loadDouble(final int local) {
+            return localOp(DLOAD, local);
+        }
+
+        Method storeDouble(final int local) {
+            return localOp(DSTORE, local);
+        }
+
+        Method newDoubleArray() {
+            code.write(NEWARRAY);
+            code.write(T_DOUBLE);
+            return this;
+        }
+
+        Method invokeStatic(final String owner, final String methodName, final String methodDescriptor) {
+            code.write(INVOKESTATIC);
+            writeShort(methodRef(owner, methodName, methodDescriptor));
+            return this;
+        }
+
+        Method invokeVirtual(final String owner, final String methodName, final String methodDescriptor) {
+            code.write(INVOKEVIRTUAL);
+            writeShort(methodRef(owner, methodName, methodDescriptor));
+            return this;
+        }
+
+        Method invokeSpecial(final String owner, final String methodName, final String methodDescriptor) {
+            code.write(INVOKESPECIAL);
+            writeShort(methodRef(owner, methodName, methodDescriptor));
+            return this;
+        }
+
+        void setMaxs(final int stack, final int locals) {
+            this.maxStack = stack;
+            this.maxLocals = locals;
+        }
+
+        int getCodeLength() {
+            return code.size();
+        }
+
+        private Method localOp(final int opcode, final int local) {
+            if (local <= 0xff) {
+                code.write(opcode);
+                code.write(local);
+            } else {
+                code.write(WIDE);
+                code.write(opcode);
+                writeShort(local);
+            }
+            return this;
+        }
+
+        private void writeShort(final int value) {
+            code.write((value >>> 8) & 0xff);
+            code.write(value & 0xff);
+        }
+
+        private void writeTo(final DataOutputStream out, final int codeAttribute) throws IOException {
+            if (code.size() > MAX_U2 || maxStack > MAX_U2 || maxLocals > MAX_U2) {
+                throw new IllegalStateException("Method too large");
+            }
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(2 + 2 + 4 + code.size() + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.size());
+            code.writeTo(out);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.bytecode;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+
+/**
+ * Base class of the classes generated by {@link BytecodeCompiler}. Functions the compiler has no intrinsic for are
+ * kept in {@link #functions} and called through {@link #call(int, double[])}.
+ */
+public abstract class GeneratedExpression {
+    private final Function[] functions;
+
+    protected GeneratedExpression(final Function[] functions) {
+        this.functions = functions;
+    }
+
+    public abstract double eval(final double[] vars) throws ExpressionExecuteException;
+
+    protected final double call(final int index, final double[] args) throws ExpressionExecuteException {
+        final DoubleStack stack = new DoubleStack(args.length + 1);
+        for (final double arg : args) {
+            stack.push(arg);
+        }
+        functions[index].apply(stack);
+        return stack.peek();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.BroadcastFunction;
+import calculator.function.ColumnFunction;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+import java.util.Arrays;
+
+/**
+ * Executes a program column at a time: every instruction processes a whole block of rows, so that the dispatch
+ * cost is paid once per block and {@link ColumnFunction} kernels run as plain array loops, which the JIT compiler
+ * vectorizes. A literal pushed right before a call of a {@link BroadcastFunction} is passed to it as a scalar.
+ * Functions without a kernel are applied row by row on a scratch stack.
+ * <p>
+ * The stack depth at every instruction of a {@linkplain RPNProgram#isVerified() verified} program is known, so the
+ * stack is a fixed set of blocks and the result of a call overwrites its first argument. Other programs are
+ * evaluated row by row instead, to report
+ * errors exactly as {@link RPNProgram#evaluate(double[])} does. Instances are not thread safe.
+ */
+final class ColumnExecutor {
+    static final int BLOCK_SIZE = 1024;
+
+    private final RPNProgram program;
+
+    private final int[] depths;
+
+    private final double[][] blocks;
+
+    private final double[][] temps;
+
+    private final double[][][] args;
+
+    /**
+     * Marks literals passed as a scalar to the following call, which are not spread over a block.
+     */
+    private final boolean[] broadcast;
+
+    private final DoubleStack scratch = new DoubleStack();
+
+    ColumnExecutor(final RPNProgram program) {
+        this.program = program;
+        this.depths = program.getDepths();
+        this.args = new double[program.getLength()][][];
+        this.broadcast = new boolean[program.getLength()];
+        if (depths == null) {
+            this.blocks = null;
+            this.temps = null;
+            return;
+        }
+        this.blocks = new double[program.getMaxDepth()][BLOCK_SIZE];
+        this.temps = new double[program.getNumberOfTemps()][BLOCK_SIZE];
+        for (int i = 0; i < program.getLength(); ++i) {
+            if (program.getOpcode(i) == RPNProgram.OP_CALL) {
+                final int arity = program.getFunction(program.getOperand(i)).getNumberOfParams();
+                args[i] = Arrays.copyOfRange(blocks, depths[i] - arity, depths[i]);
+                if (i > 0 && program.getOpcode(i - 1) == RPNProgram.OP_PUSH &&
+                        program.getFunction(program.getOperand(i)) instanceof BroadcastFunction) {
+                    broadcast[i - 1] = true;
+                }
+            }
+        }
+    }
+
+    void execute(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException {
+        if (depths == null) {
+            executeRows(params, results, from, to);
+            return;
+        }
+        scratch.setDefinitions(program.snapshotDefinitions());
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            final int length = Math.min(BLOCK_SIZE, to - start);
+            executeBlock(params, start, length);
+            System.arraycopy(blocks[depths[program.getLength()] - 1], 0, results, start, length);
+        }
+    }
+
+    private void executeBlock(final double[][] params, final int start, final int length)
+            throws ExpressionExecuteException {
+        for (int i = 0; i < program.getLength(); ++i) {
+            final int operand = program.getOperand(i);
+            switch (program.getOpcode(i)) {
+                case RPNProgram.OP_PUSH:
+                    if (!broadcast[i]) {
+                        Arrays.fill(blocks[depths[i]], 0, length, program.getConstant(operand));
+                    }
+                    break;
+                case RPNProgram.OP_LOAD:
+                    System.arraycopy(params[operand], start, blocks[depths[i]], 0, length);
+                    break;
+                case RPNProgram.OP_CALL:
+                    if (i > 0 && broadcast[i - 1]) {
+                        final double rhs = program.getConstant(program.getOperand(i - 1));
+                        ((BroadcastFunction) program.getFunction(operand)).apply(args[i][0], rhs, args[i][0], length);
+                    } else {
+                        call(program.getFunction(operand), args[i], blocks[depths[i + 1] - 1], length);
+                    }
+                    break;
+                case RPNProgram.OP_STORE:
+                    System.arraycopy(blocks[depths[i] - 1], 0, temps[operand], 0, length);
+                    break;
+                case RPNProgram.OP_RELOAD:
+                    System.arraycopy(temps[operand], 0, blocks[depths[i]], 0, length);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unknown opcode: " + program.getOpcode(i));
+            }
+        }
+    }
+
+    private void call(final Function function, final double[][] args, final double[] result, final int length)
+            throws ExpressionExecuteException {
+        if (function instanceof ColumnFunction) {
+            ((ColumnFunction) function).apply(args, result, length);
+            return;
+        }
+        try {
+            for (int row = 0; row < length; ++row) {
+                scratch.clear();
+                for (final double[] arg : args) {
+                    scratch.push(arg[row]);
+                }
+                function.apply(scratch);
+                result[row] = scratch.peek();
+            }
+        } catch (NotEnoughParametersException ex) {
+            throw new ExpressionExecuteException(program.getExpression(), ex);
+        }
+    }
+
+    private void executeRows(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException {
+        final double[] row = new double[params.length];
+        for (int i = from; i < to; ++i) {
+            for (int j = 0; j < row.length; ++j) {
+                row[j] = params[j][i];
+            }
+            results[i] = program.evaluate(row);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn;
+
+import calculator.evaluator.EvaluationResult;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.Function;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.builtin.TerminalFunction;
+import calculator.jfr.CompileEvent;
+import calculator.tokenizer.DoubleParser;
+import calculator.tokenizer.ExpressionScanner;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Stack;
+import java.util.regex.Pattern;
+
+/**
+ * Shunting-yard pass that emits postfix instructions instead of applying functions, so that the resulting
+ * {@link RPNProgram} performs exactly the same calls, in the same order, as direct evaluation would.
+ * <p>
+ * All symbols are resolved in one snapshot of the repository, while the program checks for redefinitions in the
+ * repository itself. The snapshot may be given, so that function bodies are resolved in the definitions of the
+ * evaluation calling them. The program is verified before it is returned, so expressions with operators or functions
+ * missing operands are rejected here, with the position of the offending token, instead of during evaluation.
+ * Invalid expressions are found without any exception; {@link #compile()} only creates one to report them.
+ */
+final class RPNCompiler {
+    private static final String NEGATION = "neg";
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]*");
+
+    private final Stack<Function> functions = new Stack<>();
+
+    /**
+     * Positions of the tokens of {@link #functions}.
+     */
+    private final Stack<Integer> functionPositions = new Stack<>();
+
+    /**
+     * Position of the token every instruction was emitted for.
+     */
+    private int[] positions = new int[16];
+
+    private int position;
+
+    private int tokenCount;
+
+    private EvaluationResult failure;
+
+    private final FunctionRepository functionRepository;
+
+    private final String expression;
+
+    private final Map<String, Integer> variables;
+
+    private final RPNProgram.Builder program;
+
+    RPNCompiler(final FunctionRepository functionRepository, final String expression) {
+        this(functionRepository, expression, null);
+    }
+
+    /**
+     * @param variables slots of named variables; undefined identifiers are added to it as they are found, or are
+     *      reported as errors if it is {@code null}
+     */
+    RPNCompiler(final FunctionRepository functionRepository, final String expression,
+            final Map<String, Integer> variables) {
+        this(functionRepository, functionRepository.snapshot(), expression, variables);
+    }
+
+    /**
+     * @param definitions snapshot of {@code functionRepository} in which symbols are resolved
+     */
+    RPNCompiler(final FunctionRepository functionRepository, final FunctionRepository definitions,
+            final String expression, final Map<String, Integer> variables) {
+        this.functionRepository = definitions;
+        this.expression = expression;
+        this.variables = variables;
+        this.program = new RPNProgram.Builder(expression, functionRepository);
+    }
+
+    RPNProgram compile() throws ExpressionExecuteException {
+        final RPNProgram compiled = tryCompile();
+        if (compiled == null) {
+            throw failure.toException(expression);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the program, or {@code null} if the expression is invalid, see {@link #getFailure()}
+     */
+    RPNProgram tryCompile() {
+        final CompileEvent event = new CompileEvent();
+        event.begin();
+        final ExpressionScanner scanner = new ExpressionScanner(expression);
+        while (scanner.next()) {
+            ++tokenCount;
+            position = scanner.getStart();
+            switch (scanner.getKind()) {
+                case Number:
+                    handleNumber(scanner);
+                    break;
+                case Parameter:
+                    handleParameter(scanner);
+                    break;
+                case Symbol:
+                    if (!handleSymbol(scanner)) {
+                        return null;
+                    }
+                    break;
+                case OpenBracket:
+                    handleOpenBracket();
+                    break;
+                case ClosedBracket:
+                    handleClosedBracket();
+                    break;
+                case Comma:
+                    handleComma();
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unsupported token kind: " + scanner.getKind());
+            }
+        }
+
+        while (!functions.isEmpty()) {
+            emit(functions.pop(), functionPositions.pop());
+        }
+        final RPNProgram compiled = program.tokens(tokenCount).build();
+        event.record(expression, tokenCount, compiled.getLength());
+        if (!compiled.isVerified()) {
+            final int invalid = compiled.getInvalidInstruction();
+            failure = EvaluationResult.failure(EvaluationResult.Error.NotEnoughParameters,
+                    invalid < compiled.getLength() ? positions[invalid] : expression.length(), null);
+            return null;
+        }
+        return compiled;
+    }
+
+    /**
+     * @return why {@link #tryCompile()} returned {@code null}
+     */
+    EvaluationResult getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return number of tokens read by {@link #tryCompile()}, up to the error if it failed
+     */
+    int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Resolves the symbol the scanner is at. Defined names are found in place, so only variables and undefined
+     * symbols are copied out of the expression.
+     *
+     * @return {@code false} if the symbol is undefined, see {@link #getFailure()}
+     */
+    private boolean handleSymbol(final ExpressionScanner scanner) {
+        final String name = functionRepository.findName(scanner.getInput(), scanner.getStart(), scanner.getEnd());
+        if (name == null && variables != null) {
+            final Integer variable = getVariable(scanner.getText());
+            if (variable != null) {
+                program.load(variable);
+                mark(position);
+                return true;
+            }
+        }
+        final Function function = name != null ? lookup(name) : null;
+        if (function == null) {
+            failure = EvaluationResult.failure(EvaluationResult.Error.UndefinedFunction, position,
+                    scanner.getText());
+            return false;
+        }
+        if (variables != null && variables.containsKey(name)) {
+            program.load(variables.get(name));
+            mark(position);
+            return true;
+        }
+        handleFunction(name, function);
+        return true;
+    }
+
+    private Integer getVariable(final String tokenString) {
+        Integer variable = variables.get(tokenString);
+        if (variable == null && IDENTIFIER.matcher(tokenString).matches()) {
+            variable = variables.size();
+            variables.put(tokenString, variable);
+        }
+        return variable;
+    }
+
+    /**
+     * Same as {@link FunctionRepository#get(String)}, but returns {@code null} for undefined names.
+     */
+    private Function lookup(final String name) {
+        final Function function = functionRepository.getFunctions().get(name);
+        return function != null ? function : functionRepository.getBuiltinFunctions().get(name);
+    }
+
+    private void handleNumber(final ExpressionScanner scanner) {
+        final double value = DoubleParser.parse(scanner.getInput(), scanner.getStart(), scanner.getEnd());
+        program.push(scanner.isNegated() ? -value : value);
+        mark(position);
+    }
+
+    private void handleParameter(final ExpressionScanner scanner) {
+        program.load(scanner.getParameterIndex());
+        mark(position);
+        if (scanner.isNegated()) {
+            program.call(functionRepository.getBuiltinFunctions().get(NEGATION));
+            mark(position);
+        }
+    }
+
+    private void handleFunction(final String name, final Function function) {
+        if (!functionRepository.getBuiltinFunctions().containsKey(name)) {
+            program.dependsOn(name, function);
+        }
+        while (!functions.isEmpty() && shouldExecute(functions.peek(), function)) {
+            emit(functions.pop(), functionPositions.pop());
+        }
+        functions.push(function);
+        functionPositions.push(position);
+    }
+
+    private boolean shouldExecute(final Function existingFunction, final Function newFunction) {
+        if (existingFunction.getPriority() > newFunction.getPriority()) {
+            return true;
+        }
+        if (existingFunction.getPriority() == newFunction.getPriority() &&
+                existingFunction.getAssociativity() == Function.Associativity.Left) {
+            return true;
+        }
+        return false;
+    }
+
+    private void handleOpenBracket() {
+        functions.push(new TerminalFunction());
+        functionPositions.push(position);
+    }
+
+    private void handleClosedBracket() {
+        handleComma();
+        if (!functions.isEmpty()) {
+            functions.pop();
+            functionPositions.pop();
+        }
+    }
+
+    private void handleComma() {
+        while (!functions.isEmpty() && functions.peek().getPriority() > TerminalFunction.PRIORITY_TERMINAL) {
+            emit(functions.pop(), functionPositions.pop());
+        }
+    }
+
+    private void emit(final Function function, final int functionPosition) {
+        if (!(function instanceof TerminalFunction)) {
+            program.call(function);
+            mark(functionPosition);
+        }
+    }
+
+    /**
+     * Records the position of the last instruction.
+     */
+    private void mark(final int tokenPosition) {
+        final int instruction = program.getLength() - 1;
+        if (instruction >= positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[instruction] = tokenPosition;
+    }
+}
@@ -23,118 +23,177 @@
  */
 package calculator.evaluator.rpn;
 
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.EvaluationResult;
 import calculator.evaluator.Evaluator;
-import calculator.evaluator.rpn.token.FunctionToken;
-import calculator.evaluator.rpn.token.NumberToken;
-import calculator.evaluator.rpn.token.Token;
-import calculator.evaluator.rpn.token.TokenFactory;
+import calculator.evaluator.InvalidExpression;
+import calculator.evaluator.PreparedExpression;
+import calculator.evaluator.rpn.optimizer.RPNOptimizer;
 import calculator.exception.execute.ExpressionExecuteException;
-import calculator.exception.execute.FunctionNotDefinedException;
-import calculator.exception.execute.NotEnoughParametersException;
 import calculator.function.Function;
 import calculator.function.FunctionRepository;
-import calculator.function.rpn.builtin.TerminalFunction;
-import calculator.tokenizer.ExpressionTokenizer;
-import calculator.tokenizer.SimpleExpressionTokenizer;
-import java.util.Stack;
+import calculator.jfr.EvaluateEvent;
+import calculator.metrics.EvaluationMetrics;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class RPNEvaluator implements Evaluator {
-    private final Stack<Double> values = new Stack<>();
+    private final FunctionRepository functionRepository;
 
-    private final Stack<Function> functions = new Stack<>();
+    private final RPNOptimizer optimizer;
 
-    private final TokenFactory tokenFactory;
+    private final EvaluationMetrics metrics;
 
     public RPNEvaluator(final FunctionRepository functionRepository) {
-        this.tokenFactory = new TokenFactory(functionRepository);
+        this(functionRepository, null);
+    }
+
+    /**
+     * @param metrics instruments expressions compiled while they are enabled; may be {@code null}
+     */
+    public RPNEvaluator(final FunctionRepository functionRepository, final EvaluationMetrics metrics) {
+        this.functionRepository = functionRepository;
+        this.optimizer = new RPNOptimizer(functionRepository);
+        this.metrics = metrics;
     }
 
     @Override
     public double evaluate(final String expression) throws ExpressionExecuteException {
-        values.clear();
-        functions.clear();
-
-        ExpressionTokenizer tokenizer = new SimpleExpressionTokenizer(expression);
+        final EvaluateEvent event = new EvaluateEvent();
+        event.begin();
+        final CompiledExpression compiled = tryCompile(expression);
+        boolean failed = true;
         try {
-            while (tokenizer.hasNextToken()) {
-                String tokenString = tokenizer.getNextToken();
-                final Token<?> token = tokenFactory.getToken(tokenString);
-                handleToken(token);
-            }
-
-            while (!functions.isEmpty()) {
-                final Function function = functions.pop();
-                function.apply(values);
-            }
-            return values.peek();
-        } catch (FunctionNotDefinedException | NotEnoughParametersException ex) {
-            throw new ExpressionExecuteException(expression, ex);
+            final double result = compiled.evaluate();
+            failed = false;
+            return result;
+        } finally {
+            event.record(expression, compiled, failed);
         }
     }
 
-    private void handleToken(final Token<?> token) throws ExpressionExecuteException, NotEnoughParametersException {
-        switch (token.getTokenType()) {
-            case Number:
-                handleNumber(token);
-                break;
-            case Function:
-                handleFunction(token);
-                break;
-            case OpenBracket:
-                handleOpenBracket();
-                break;
-            case ClosedBracket:
-                handleClosedBracket();
-                break;
-            case Comma:
-                handleComma();
-                break;
-            default:
-                throw new UnsupportedOperationException(token.getRawValue());
-        }
+    @Override
+    public CompiledExpression compile(final String expression) throws ExpressionExecuteException {
+        return compile(expression, functionRepository.snapshot());
     }
 
-    private void handleNumber(final Token<?> token) {
-        final NumberToken numberToken = (NumberToken)token;
-        values.push(numberToken.getValue());
+    /**
+     * An invalid expression stays valid for caching until user definitions change, except while metrics are enabled,
+     * so that every failure is counted.
+     */
+    @Override
+    public CompiledExpression tryCompile(final String expression) {
+        return tryCompile(expression, functionRepository.snapshot());
     }
 
-    private void handleFunction(final Token<?> token) throws ExpressionExecuteException,
-            NotEnoughParametersException {
-        final FunctionToken functionToken = (FunctionToken)token;
-        while (!functions.isEmpty() && shouldExecute(functions.peek(), functionToken.getValue())) {
-            final Function function = functions.pop();
-            function.apply(values);
+    @Override
+    public CompiledExpression compile(final String expression, final FunctionRepository definitions)
+            throws ExpressionExecuteException {
+        final CompiledExpression compiled = tryCompile(expression, definitions);
+        if (compiled instanceof InvalidExpression) {
+            throw ((InvalidExpression) compiled).toException();
         }
-        functions.push(functionToken.getValue());
+        return compiled;
     }
 
-    private boolean shouldExecute(final Function existingFunction, final Function newFunction) {
-        if (existingFunction.getPriority() > newFunction.getPriority()) {
-            return true;
-        }
-        if (existingFunction.getPriority() == newFunction.getPriority() &&
-                existingFunction.getAssociativity() == Function.Associativity.Left) {
-            return true;
+    private CompiledExpression tryCompile(final String expression, final FunctionRepository definitions) {
+        final RPNCompiler compiler = new RPNCompiler(functionRepository, definitions, expression, null);
+        final RPNProgram program = compiler.tryCompile();
+        if (program == null) {
+            if (metrics != null && metrics.isEnabled()) {
+                metrics.recordCompileError(compiler.getFailure());
+                return new InvalidExpression(expression, compiler.getFailure(), compiler.getTokenCount(), null, null);
+            }
+            return new InvalidExpression(expression, compiler.getFailure(), compiler.getTokenCount(),
+                    functionRepository, definitions.getFunctions());
         }
-        return false;
+        return instrument(optimizer.optimize(program));
     }
 
-    private void handleOpenBracket() {
-        functions.push(new TerminalFunction());
+    @Override
+    public EvaluationResult tryEvaluate(final String expression) {
+        final EvaluateEvent event = new EvaluateEvent();
+        event.begin();
+        final CompiledExpression compiled = tryCompile(expression);
+        final EvaluationResult result = EvaluationResult.of(compiled);
+        event.record(expression, compiled, !result.isSuccess());
+        return result;
+    }
+
+    @Override
+    public PreparedExpression prepare(final String expression, final String... variables)
+            throws ExpressionExecuteException {
+        final Map<String, Integer> slots = new LinkedHashMap<>();
+        for (final String variable : variables) {
+            if (!slots.containsKey(variable)) {
+                slots.put(variable, slots.size());
+            }
+        }
+        try {
+            final RPNProgram program = new RPNCompiler(functionRepository, expression, slots).compile();
+            return new PreparedExpression(instrument(optimizer.optimize(program)), new ArrayList<>(slots.keySet()));
+        } catch (ExpressionExecuteException ex) {
+            throw compileError(expression, ex);
+        }
     }
 
-    private void handleClosedBracket() throws ExpressionExecuteException, NotEnoughParametersException {
-        handleComma();
-        if (!functions.isEmpty()) {
-            functions.pop();
+    private ExpressionExecuteException compileError(final String expression, final ExpressionExecuteException ex) {
+        final ExpressionExecuteException error = new ExpressionExecuteException(expression, ex);
+        if (metrics != null && metrics.isEnabled()) {
+            metrics.recordCompileError(error);
         }
+        return error;
     }
 
-    private void handleComma() throws ExpressionExecuteException, NotEnoughParametersException {
-        while (!functions.isEmpty() && functions.peek().getPriority() > TerminalFunction.PRIORITY_TERMINAL) {
-            final Function function = functions.pop();
-            function.apply(values);
+    /**
+     * Rebuilds the program with every function wrapped to be counted under the name it has in the repository, if
+     * metrics are enabled.
+     */
+    private CompiledExpression instrument(final RPNProgram program) {
+        if (metrics == null || !metrics.isEnabled()) {
+            return program;
+        }
+        final Map<Function, String> names = new IdentityHashMap<>();
+        for (final Map.Entry<String, Function> entry : functionRepository.getBuiltinFunctions().entrySet()) {
+            names.put(entry.getValue(), entry.getKey());
+        }
+        for (final Map.Entry<String, Function> entry : functionRepository.getFunctions().entrySet()) {
+            names.put(entry.getValue(), entry.getKey());
+        }
+        final Map<Function, Function> instrumented = new IdentityHashMap<>();
+        final RPNProgram.Builder builder = program.derive();
+        for (int i = 0; i < program.getLength(); ++i) {
+            final int operand = program.getOperand(i);
+            switch (program.getOpcode(i)) {
+                case RPNProgram.OP_PUSH:
+                    builder.push(program.getConstant(operand));
+                    break;
+                case RPNProgram.OP_CALL:
+                    final Function function = program.getFunction(operand);
+                    Function wrapper = instrumented.get(function);
+                    if (wrapper == null) {
+                        final String name = names.get(function);
+                        wrapper = metrics.instrument(name != null ? name : function.getClass().getSimpleName(),
+                                function);
+                        instrumented.put(function, wrapper);
+                    }
+                    builder.call(wrapper);
+                    break;
+                case RPNProgram.OP_LOAD:
+                    builder.load(operand);
+                    break;
+                case RPNProgram.OP_STORE:
+                    builder.store(operand);
+                    break;
+                case RPNProgram.OP_RELOAD:
+                    builder.reload(operand);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unknown opcode: " + program.getOpcode(i));
+            }
         }
+        return metrics.instrument(builder.build());
     }
 }
@@ -0,0 +1,508 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.FunctionNotDefinedException;
+import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+import calculator.function.FunctionRepository;
+import calculator.function.UncheckedFunction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EmptyStackException;
+import java.util.List;
+
+/**
+ * Flat postfix program. Every instruction takes two slots in {@code code}: an opcode and its operand, which is an
+ * index into the constant pool, into the table of resolved functions, or into the parameters or temporaries of the
+ * call frame. Temporaries hold shared subexpressions: {@link #OP_STORE} copies the top of the stack into one and
+ * {@link #OP_RELOAD} pushes it again.
+ * <p>
+ * The stack depth before every instruction is computed from the arities of the functions when the program is built.
+ * Programs that never underflow and leave a value are verified: they run on a stack sized for their maximum depth
+ * up front, and the interpreter itself pushes without checks. Programs produced by the compiler are always verified.
+ */
+public final class RPNProgram implements CompiledExpression {
+    public static final int OP_PUSH = 0;
+
+    public static final int OP_CALL = 1;
+
+    public static final int OP_LOAD = 2;
+
+    public static final int OP_STORE = 3;
+
+    public static final int OP_RELOAD = 4;
+
+    private static final double[] NO_PARAMS = new double[0];
+
+    private final String expression;
+
+    private final int[] code;
+
+    private final double[] constants;
+
+    private final Function[] functions;
+
+    /**
+     * Same as {@link #functions}, where they have an unchecked kernel, for verified programs; {@code null} if not
+     * verified.
+     */
+    private final UncheckedFunction[] uncheckedFunctions;
+
+    private final int numberOfParams;
+
+    private final int numberOfTemps;
+
+    private final FunctionRepository repository;
+
+    private final String[] dependencyNames;
+
+    private final Function[] dependencies;
+
+    /**
+     * Depth before every instruction and, as the last element, after the program; {@code null} if not verified.
+     */
+    private final int[] depths;
+
+    private final int maxDepth;
+
+    private final int invalidInstruction;
+
+    private final int tokenCount;
+
+    private RPNProgram(final Builder builder) {
+        this.expression = builder.expression;
+        this.code = Arrays.copyOf(builder.code, builder.codeLength);
+        this.constants = new double[builder.constants.size()];
+        for (int i = 0; i < constants.length; ++i) {
+            constants[i] = builder.constants.get(i);
+        }
+        this.functions = builder.functions.toArray(new Function[builder.functions.size()]);
+        this.numberOfParams = builder.numberOfParams;
+        this.numberOfTemps = builder.numberOfTemps;
+        this.tokenCount = builder.tokenCount;
+        this.repository = builder.repository;
+        this.dependencyNames = builder.dependencyNames.toArray(new String[builder.dependencyNames.size()]);
+        this.dependencies = builder.dependencies.toArray(new Function[builder.dependencies.size()]);
+        final int[] computed = new int[getLength() + 1];
+        this.invalidInstruction = computeDepths(computed);
+        this.depths = invalidInstruction < 0 ? computed : null;
+        int max = 0;
+        for (int i = 0; depths != null && i < depths.length; ++i) {
+            max = Math.max(max, depths[i]);
+        }
+        this.maxDepth = max;
+        this.uncheckedFunctions = depths != null ? new UncheckedFunction[functions.length] : null;
+        for (int i = 0; uncheckedFunctions != null && i < functions.length; ++i) {
+            if (functions[i] instanceof UncheckedFunction) {
+                uncheckedFunctions[i] = (UncheckedFunction) functions[i];
+            }
+        }
+    }
+
+    /**
+     * @return index of the first instruction without enough operands, the length of the program if it leaves no
+     *      value, or -1 if the program is valid
+     */
+    private int computeDepths(final int[] computed) {
+        int depth = 0;
+        for (int i = 0; i < getLength(); ++i) {
+            computed[i] = depth;
+            if (getOpcode(i) == OP_CALL) {
+                final int arity = functions[getOperand(i)].getNumberOfParams();
+                if (depth < arity) {
+                    return i;
+                }
+                depth += 1 - arity;
+            } else if (getOpcode(i) == OP_STORE) {
+                if (depth < 1) {
+                    return i;
+                }
+            } else {
+                ++depth;
+            }
+        }
+        computed[getLength()] = depth;
+        return depth > 0 ? -1 : getLength();
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public int getLength() {
+        return code.length / 2;
+    }
+
+    public int getOpcode(final int instruction) {
+        return code[2 * instruction];
+    }
+
+    public int getOperand(final int instruction) {
+        return code[2 * instruction + 1];
+    }
+
+    public double getConstant(final int index) {
+        return constants[index];
+    }
+
+    public Function getFunction(final int index) {
+        return functions[index];
+    }
+
+    /**
+     * Returns a builder for a program equivalent to this one, bound to the same symbols, but without any code.
+     * Used by passes rewriting the program.
+     */
+    public Builder derive() {
+        final Builder builder = new Builder(expression, repository);
+        builder.numberOfParams = numberOfParams;
+        builder.tokenCount = tokenCount;
+        for (int i = 0; i < dependencies.length; ++i) {
+            builder.dependsOn(dependencyNames[i], dependencies[i]);
+        }
+        return builder;
+    }
+
+    @Override
+    public int getNumberOfParams() {
+        return numberOfParams;
+    }
+
+    public int getNumberOfTemps() {
+        return numberOfTemps;
+    }
+
+    @Override
+    public List<String> getDependencyNames() {
+        return Collections.unmodifiableList(Arrays.asList(dependencyNames));
+    }
+
+    @Override
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public boolean isVerified() {
+        return depths != null;
+    }
+
+    /**
+     * @return index of the first instruction without enough operands, the length of the program if it leaves no
+     *      value, or -1 if the program is {@linkplain #isVerified() verified}
+     */
+    public int getInvalidInstruction() {
+        return invalidInstruction;
+    }
+
+    /**
+     * @return the current definitions of the repository the program was compiled for, in which the function bodies
+     *      it calls are resolved
+     */
+    FunctionRepository snapshotDefinitions() {
+        return repository.snapshot();
+    }
+
+    /**
+     * @return largest number of values the program keeps on the stack, not counting its frame; 0 if not verified
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return depth before every instruction and, as the last element, after the program, or {@code null} if the
+     *      program is not verified; not to be modified
+     */
+    int[] getDepths() {
+        return depths;
+    }
+
+    @Override
+    public double evaluate() throws ExpressionExecuteException {
+        return evaluate(NO_PARAMS);
+    }
+
+    @Override
+    public double evaluate(final double[] params) throws ExpressionExecuteException {
+        if (params.length < numberOfParams) {
+            throw new ExpressionExecuteException(expression,
+                    new NotEnoughParametersException(expression, new EmptyStackException()));
+        }
+        final DoubleStack values = new DoubleStack(numberOfParams + numberOfTemps + maxDepth);
+        for (int i = 0; i < numberOfParams; ++i) {
+            values.push(params[i]);
+        }
+        for (int i = 0; i < numberOfTemps; ++i) {
+            values.push(0.0);
+        }
+        values.setFloor(values.size());
+        values.setDefinitions(repository.snapshot());
+        if (depths != null) {
+            runVerified(values, 0);
+        } else {
+            run(values, 0);
+        }
+        return values.peek();
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results) throws ExpressionExecuteException {
+        evaluate(params, results, 0, results.length);
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException {
+        if (params.length < numberOfParams) {
+            throw new ExpressionExecuteException(expression,
+                    new NotEnoughParametersException(expression, new EmptyStackException()));
+        }
+        for (final double[] column : params) {
+            if (column.length < to) {
+                throw new IllegalArgumentException("Parameter column shorter than results: " + column.length);
+            }
+        }
+        new ColumnExecutor(this).execute(params, results, from, to);
+    }
+
+    @Override
+    public void execute(final DoubleStack stack) throws ExpressionExecuteException {
+        final int callerFloor = stack.getFloor();
+        final int frame = stack.size() - numberOfParams;
+        if (frame < callerFloor) {
+            throw new NotEnoughParametersException(expression, new EmptyStackException());
+        }
+        stack.ensureCapacity(numberOfTemps + maxDepth);
+        for (int i = 0; i < numberOfTemps; ++i) {
+            stack.push(0.0);
+        }
+        stack.setFloor(stack.size());
+        final FunctionRepository callerDefinitions = stack.getDefinitions();
+        if (callerDefinitions == null) {
+            stack.setDefinitions(repository.snapshot());
+        }
+        try {
+            if (depths != null) {
+                runVerified(stack, frame);
+            } else {
+                run(stack, frame);
+            }
+            final double result = stack.peek();
+            stack.truncate(frame);
+            stack.push(result);
+        } finally {
+            stack.setFloor(callerFloor);
+            stack.setDefinitions(callerDefinitions);
+        }
+    }
+
+    @Override
+    public boolean isStale() {
+        for (int i = 0; i < dependencies.length; ++i) {
+            try {
+                if (repository.get(dependencyNames[i]) != dependencies[i]) {
+                    return true;
+                }
+            } catch (FunctionNotDefinedException ex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #run(DoubleStack, int)} for verified programs, whose stack has room for their maximum depth.
+     * Functions with an unchecked kernel are applied without underflow checks; the others, e.g. user defined ones,
+     * run verified bodies themselves.
+     */
+    private void runVerified(final DoubleStack values, final int frame) throws ExpressionExecuteException {
+        final int temps = frame + numberOfParams;
+        for (int pc = 0; pc < code.length; pc += 2) {
+            switch (code[pc]) {
+                case OP_PUSH:
+                    values.pushUnchecked(constants[code[pc + 1]]);
+                    break;
+                case OP_CALL:
+                    final UncheckedFunction unchecked = uncheckedFunctions[code[pc + 1]];
+                    if (unchecked != null) {
+                        unchecked.applyUnchecked(values);
+                    } else {
+                        functions[code[pc + 1]].apply(values);
+                    }
+                    break;
+                case OP_LOAD:
+                    values.pushUnchecked(values.get(frame + code[pc + 1]));
+                    break;
+                case OP_STORE:
+                    values.set(temps + code[pc + 1], values.get(values.size() - 1));
+                    break;
+                case OP_RELOAD:
+                    values.pushUnchecked(values.get(temps + code[pc + 1]));
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unknown opcode: " + code[pc]);
+            }
+        }
+    }
+
+    private void run(final DoubleStack values, final int frame) throws ExpressionExecuteException {
+        final int temps = frame + numberOfParams;
+        try {
+            for (int pc = 0; pc < code.length; pc += 2) {
+                switch (code[pc]) {
+                    case OP_PUSH:
+                        values.push(constants[code[pc + 1]]);
+                        break;
+                    case OP_CALL:
+                        functions[code[pc + 1]].apply(values);
+                        break;
+                    case OP_LOAD:
+                        values.push(values.get(frame + code[pc + 1]));
+                        break;
+                    case OP_STORE:
+                        values.set(temps + code[pc + 1], values.peek());
+                        break;
+                    case OP_RELOAD:
+                        values.push(values.get(temps + code[pc + 1]));
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("Unknown opcode: " + code[pc]);
+                }
+            }
+        } catch (NotEnoughParametersException ex) {
+            throw new ExpressionExecuteException(expression, ex);
+        }
+    }
+
+    public static final class Builder {
+        private final String expression;
+
+        private final FunctionRepository repository;
+
+        private int[] code = new int[16];
+
+        private int codeLength = 0;
+
+        private final List<Double> constants = new ArrayList<>();
+
+        private final List<Function> functions = new ArrayList<>();
+
+        private int numberOfParams = 0;
+
+        private int numberOfTemps = 0;
+
+        private int tokenCount = 0;
+
+        private final List<String> dependencyNames = new ArrayList<>();
+
+        private final List<Function> dependencies = new ArrayList<>();
+
+        public Builder(final String expression, final FunctionRepository repository) {
+            this.expression = expression;
+            this.repository = repository;
+        }
+
+        public Builder push(final double value) {
+            constants.add(value);
+            return emit(OP_PUSH, constants.size() - 1);
+        }
+
+        public Builder call(final Function function) {
+            int index = indexOf(functions, function);
+            if (index < 0) {
+                functions.add(function);
+                index = functions.size() - 1;
+            }
+            return emit(OP_CALL, index);
+        }
+
+        public Builder load(final int param) {
+            numberOfParams = Math.max(numberOfParams, param + 1);
+            return emit(OP_LOAD, param);
+        }
+
+        public Builder store(final int temp) {
+            numberOfTemps = Math.max(numberOfTemps, temp + 1);
+            return emit(OP_STORE, temp);
+        }
+
+        public Builder reload(final int temp) {
+            return emit(OP_RELOAD, temp);
+        }
+
+        /**
+         * Records a user defined symbol the program was bound to, so that {@link RPNProgram#isStale()} can detect
+         * redefinitions.
+         */
+        public Builder dependsOn(final String name, final Function function) {
+            if (!dependencyNames.contains(name)) {
+                dependencyNames.add(name);
+                dependencies.add(function);
+            }
+            return this;
+        }
+
+        /**
+         * Records the number of tokens the program was compiled from.
+         */
+        public Builder tokens(final int count) {
+            tokenCount = count;
+            return this;
+        }
+
+        /**
+         * @return number of instructions emitted so far
+         */
+        public int getLength() {
+            return codeLength / 2;
+        }
+
+        public RPNProgram build() {
+            return new RPNProgram(this);
+        }
+
+        private static int indexOf(final List<Function> list, final Function function) {
+            for (int i = 0; i < list.size(); ++i) {
+                if (list.get(i) == function) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Builder emit(final int opcode, final int operand) {
+            if (codeLength + 2 > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            code[codeLength++] = opcode;
+            code[codeLength++] = operand;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.optimizer;
+
+import calculator.function.Function;
+import calculator.function.PureFunction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges structurally equal subtrees into a single node and marks calls that are referenced more than once as
+ * shared, so they are computed once per evaluation. Only calls whose whole subtree consists of
+ * {@link PureFunction pure functions}, literals and parameters are shared; anything else is still computed at
+ * every reference.
+ */
+public final class CommonSubexpressionEliminator {
+    public ExpressionTree eliminate(final ExpressionTree tree) {
+        final Map<NodeKey, ExpressionNode> canonical = new HashMap<>();
+        final Map<ExpressionNode, ExpressionNode> interned = new IdentityHashMap<>();
+        final List<ExpressionNode> roots = new ArrayList<>();
+        for (final ExpressionNode root : tree.getRoots()) {
+            roots.add(intern(root, canonical, interned));
+        }
+
+        final Map<ExpressionNode, Boolean> pure = new IdentityHashMap<>();
+        final Map<ExpressionNode, Integer> uses = new IdentityHashMap<>();
+        for (final ExpressionNode root : roots) {
+            countUses(root, uses, pure);
+        }
+        final List<ExpressionNode> shared = new ArrayList<>();
+        for (final Map.Entry<ExpressionNode, Integer> entry : uses.entrySet()) {
+            if (entry.getValue() > 1 && isShareable(entry.getKey(), pure)) {
+                shared.add(entry.getKey());
+            }
+        }
+        return new ExpressionTree(roots, shared);
+    }
+
+    private static ExpressionNode intern(final ExpressionNode node, final Map<NodeKey, ExpressionNode> canonical,
+            final Map<ExpressionNode, ExpressionNode> interned) {
+        final ExpressionNode known = interned.get(node);
+        if (known != null) {
+            return known;
+        }
+        final ExpressionNode[] children = new ExpressionNode[node.getChildCount()];
+        for (int i = 0; i < children.length; ++i) {
+            children[i] = intern(node.getChild(i), canonical, interned);
+        }
+        final NodeKey key = new NodeKey(node, children);
+        ExpressionNode result = canonical.get(key);
+        if (result == null) {
+            result = key.sameChildren(node) ? node : ExpressionNode.call(node.getFunction(), children);
+            canonical.put(key, result);
+        }
+        interned.put(node, result);
+        return result;
+    }
+
+    /**
+     * Counts references to every node as they will be emitted: children of a shared node are emitted once, children
+     * of any other node once per reference to it.
+     */
+    private static void countUses(final ExpressionNode node, final Map<ExpressionNode, Integer> uses,
+            final Map<ExpressionNode, Boolean> pure) {
+        final Integer count = uses.get(node);
+        uses.put(node, count == null ? 1 : count + 1);
+        if (count == null || !isShareable(node, pure)) {
+            for (int i = 0; i < node.getChildCount(); ++i) {
+                countUses(node.getChild(i), uses, pure);
+            }
+        }
+    }
+
+    private static boolean isShareable(final ExpressionNode node, final Map<ExpressionNode, Boolean> pure) {
+        return node.getKind() == ExpressionNode.Kind.Call && node.getChildCount() > 0 && isPure(node, pure);
+    }
+
+    private static boolean isPure(final ExpressionNode node, final Map<ExpressionNode, Boolean> pure) {
+        if (node.getKind() != ExpressionNode.Kind.Call) {
+            return true;
+        }
+        Boolean result = pure.get(node);
+        if (result == null) {
+            result = node.getFunction() instanceof PureFunction;
+            for (int i = 0; result && i < node.getChildCount(); ++i) {
+                result = isPure(node.getChild(i), pure);
+            }
+            pure.put(node, result);
+        }
+        return result;
+    }
+
+    /**
+     * Structural identity of a node whose children are already interned: literals compare by their bits, calls by
+     * the identity of the function and of the children.
+     */
+    private static final class NodeKey {
+        private final ExpressionNode.Kind kind;
+
+        private final long bits;
+
+        private final Function function;
+
+        private final ExpressionNode[] children;
+
+        NodeKey(final ExpressionNode node, final ExpressionNode[] children) {
+            this.kind = node.getKind();
+            this.bits = kind == ExpressionNode.Kind.Constant ?
+                    Double.doubleToRawLongBits(node.getValue()) : node.getParameter();
+            this.function = node.getFunction();
+            this.children = children;
+        }
+
+        boolean sameChildren(final ExpressionNode node) {
+            for (int i = 0; i < children.length; ++i) {
+                if (children[i] != node.getChild(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof NodeKey)) {
+                return false;
+            }
+            final NodeKey other = (NodeKey) obj;
+            if (kind != other.kind || bits != other.bits || function != other.function ||
+                    children.length != other.children.length) {
+                return false;
+            }
+            for (int i = 0; i < children.length; ++i) {
+                if (children[i] != other.children[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = kind.hashCode();
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+            hash = 31 * hash + System.identityHashCode(function);
+            for (final ExpressionNode child : children) {
+                hash = 31 * hash + System.identityHashCode(child);
+            }
+            return hash;
+        }
+    }
+}
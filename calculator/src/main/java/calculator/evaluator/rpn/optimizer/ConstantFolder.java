@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.optimizer;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+import calculator.function.rpn.builtin.BinaryOperatorFunction;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Evaluates calls of builtin functions whose arguments are all literals, and removes operations that are
+ * identities under IEEE 754: {@code x*1}, {@code 1*x}, {@code x/1}, {@code x^1}, {@code x-0} and
+ * {@code x+(-0)}. Note that {@code x+0} is not an identity, as {@code -0+0} is {@code +0}.
+ * <p>
+ * Only builtins are folded: user defined functions and constants (including {@code ans}) may be redefined at any
+ * time, while builtins cannot.
+ */
+public final class ConstantFolder {
+    private final Set<Function> builtins = Collections.newSetFromMap(new IdentityHashMap<Function, Boolean>());
+
+    public ConstantFolder(final Collection<Function> builtinFunctions) {
+        builtins.addAll(builtinFunctions);
+    }
+
+    public ExpressionNode fold(final ExpressionNode node) {
+        if (node.getKind() != ExpressionNode.Kind.Call) {
+            return node;
+        }
+        final ExpressionNode[] children = new ExpressionNode[node.getChildCount()];
+        boolean changed = false;
+        boolean allConstant = true;
+        for (int i = 0; i < children.length; ++i) {
+            children[i] = fold(node.getChild(i));
+            changed |= children[i] != node.getChild(i);
+            allConstant &= children[i].isConstant();
+        }
+
+        final Function function = node.getFunction();
+        if (!builtins.contains(function)) {
+            return changed ? ExpressionNode.call(function, children) : node;
+        }
+        if (allConstant) {
+            return evaluate(function, children);
+        }
+        final ExpressionNode simplified = simplify(function, children);
+        if (simplified != null) {
+            return simplified;
+        }
+        return changed ? ExpressionNode.call(function, children) : node;
+    }
+
+    private ExpressionNode evaluate(final Function function, final ExpressionNode[] children) {
+        final DoubleStack stack = new DoubleStack(children.length + 1);
+        for (final ExpressionNode child : children) {
+            stack.push(child.getValue());
+        }
+        try {
+            function.apply(stack);
+        } catch (ExpressionExecuteException ex) {
+            return ExpressionNode.call(function, children);
+        }
+        return ExpressionNode.constant(stack.peek());
+    }
+
+    private ExpressionNode simplify(final Function function, final ExpressionNode[] children) {
+        if (function instanceof BinaryOperatorFunction.Multiply) {
+            if (isLiteral(children[1], 1.0)) {
+                return children[0];
+            }
+            if (isLiteral(children[0], 1.0)) {
+                return children[1];
+            }
+        } else if (function instanceof BinaryOperatorFunction.Divide ||
+                function instanceof BinaryOperatorFunction.Power) {
+            if (isLiteral(children[1], 1.0)) {
+                return children[0];
+            }
+        } else if (function instanceof BinaryOperatorFunction.Substract) {
+            if (isLiteral(children[1], 0.0)) {
+                return children[0];
+            }
+        } else if (function instanceof BinaryOperatorFunction.Add) {
+            if (isLiteral(children[1], -0.0)) {
+                return children[0];
+            }
+            if (isLiteral(children[0], -0.0)) {
+                return children[1];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLiteral(final ExpressionNode node, final double value) {
+        return node.isConstant() &&
+                Double.doubleToRawLongBits(node.getValue()) == Double.doubleToRawLongBits(value);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.optimizer;
+
+import calculator.function.Function;
+import java.util.Arrays;
+
+/**
+ * Node of the expression tree rebuilt from a postfix program: a literal, a parameter reference or a function call
+ * with its arguments.
+ */
+public final class ExpressionNode {
+    public static enum Kind {
+        Constant, Parameter, Call
+    }
+
+    private static final ExpressionNode[] NO_CHILDREN = new ExpressionNode[0];
+
+    private final Kind kind;
+
+    private final double value;
+
+    private final int parameter;
+
+    private final Function function;
+
+    private final ExpressionNode[] children;
+
+    private final int height;
+
+    private ExpressionNode(final Kind kind, final double value, final int parameter, final Function function,
+            final ExpressionNode[] children) {
+        this.kind = kind;
+        this.value = value;
+        this.parameter = parameter;
+        this.function = function;
+        this.children = children;
+        int childHeight = 0;
+        for (final ExpressionNode child : children) {
+            childHeight = Math.max(childHeight, child.height);
+        }
+        this.height = childHeight + 1;
+    }
+
+    public static ExpressionNode constant(final double value) {
+        return new ExpressionNode(Kind.Constant, value, -1, null, NO_CHILDREN);
+    }
+
+    public static ExpressionNode parameter(final int index) {
+        return new ExpressionNode(Kind.Parameter, Double.NaN, index, null, NO_CHILDREN);
+    }
+
+    public static ExpressionNode call(final Function function, final ExpressionNode... children) {
+        return new ExpressionNode(Kind.Call, Double.NaN, -1, function, Arrays.copyOf(children, children.length));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public int getParameter() {
+        return parameter;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public int getChildCount() {
+        return children.length;
+    }
+
+    public ExpressionNode getChild(final int index) {
+        return children[index];
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isConstant() {
+        return kind == Kind.Constant;
+    }
+}
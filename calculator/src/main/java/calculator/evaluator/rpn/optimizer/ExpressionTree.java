@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.optimizer;
+
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.function.Function;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tree form of a postfix program. The shunting-yard algorithm does not check syntax, so a program may leave more
+ * than one value on the stack; every such value is kept as a separate root, in stack order, and the result is the
+ * last one.
+ * <p>
+ * Nodes may be referenced more than once, turning the tree into a DAG. Nodes marked as shared are computed once per
+ * evaluation and kept in a temporary; other nodes are recomputed at every reference.
+ */
+public final class ExpressionTree {
+    private final List<ExpressionNode> roots;
+
+    private final Set<ExpressionNode> shared =
+            Collections.newSetFromMap(new IdentityHashMap<ExpressionNode, Boolean>());
+
+    public ExpressionTree(final List<ExpressionNode> roots) {
+        this(roots, Collections.<ExpressionNode>emptySet());
+    }
+
+    public ExpressionTree(final List<ExpressionNode> roots, final Collection<ExpressionNode> shared) {
+        this.roots = Collections.unmodifiableList(new ArrayList<>(roots));
+        this.shared.addAll(shared);
+    }
+
+    /**
+     * Rebuilds the tree of the program, or returns {@code null} if the program underflows or produces no value,
+     * i.e. when it fails at run time and must be executed as is to report the error.
+     */
+    public static ExpressionTree fromProgram(final RPNProgram program) {
+        final List<ExpressionNode> stack = new ArrayList<>();
+        final ExpressionNode[] temps = new ExpressionNode[program.getNumberOfTemps()];
+        final List<ExpressionNode> shared = new ArrayList<>();
+        for (int i = 0; i < program.getLength(); ++i) {
+            final int operand = program.getOperand(i);
+            switch (program.getOpcode(i)) {
+                case RPNProgram.OP_PUSH:
+                    stack.add(ExpressionNode.constant(program.getConstant(operand)));
+                    break;
+                case RPNProgram.OP_LOAD:
+                    stack.add(ExpressionNode.parameter(operand));
+                    break;
+                case RPNProgram.OP_CALL:
+                    final Function function = program.getFunction(operand);
+                    final int params = function.getNumberOfParams();
+                    if (params > stack.size()) {
+                        return null;
+                    }
+                    final List<ExpressionNode> args = stack.subList(stack.size() - params, stack.size());
+                    final ExpressionNode call = ExpressionNode.call(function,
+                            args.toArray(new ExpressionNode[params]));
+                    args.clear();
+                    stack.add(call);
+                    break;
+                case RPNProgram.OP_STORE:
+                    if (stack.isEmpty()) {
+                        return null;
+                    }
+                    temps[operand] = stack.get(stack.size() - 1);
+                    shared.add(temps[operand]);
+                    break;
+                case RPNProgram.OP_RELOAD:
+                    if (temps[operand] == null) {
+                        return null;
+                    }
+                    stack.add(temps[operand]);
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return stack.isEmpty() ? null : new ExpressionTree(stack, shared);
+    }
+
+    public List<ExpressionNode> getRoots() {
+        return roots;
+    }
+
+    public boolean isShared(final ExpressionNode node) {
+        return shared.contains(node);
+    }
+
+    public boolean hasSharedNodes() {
+        return !shared.isEmpty();
+    }
+
+    public RPNProgram toProgram(final RPNProgram template) {
+        final RPNProgram.Builder builder = template.derive();
+        final Map<ExpressionNode, Integer> temps = new IdentityHashMap<>();
+        for (final ExpressionNode root : roots) {
+            emit(builder, root, temps);
+        }
+        return builder.build();
+    }
+
+    private void emit(final RPNProgram.Builder builder, final ExpressionNode node,
+            final Map<ExpressionNode, Integer> temps) {
+        final Integer temp = temps.get(node);
+        if (temp != null) {
+            builder.reload(temp);
+            return;
+        }
+        switch (node.getKind()) {
+            case Constant:
+                builder.push(node.getValue());
+                break;
+            case Parameter:
+                builder.load(node.getParameter());
+                break;
+            case Call:
+                for (int i = 0; i < node.getChildCount(); ++i) {
+                    emit(builder, node.getChild(i), temps);
+                }
+                builder.call(node.getFunction());
+                break;
+            default:
+                throw new UnsupportedOperationException(node.getKind().name());
+        }
+        if (shared.contains(node)) {
+            final int newTemp = temps.size();
+            temps.put(node, newTemp);
+            builder.store(newTemp);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.optimizer;
+
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.function.FunctionRepository;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites compiled programs through their tree form. Trees deeper than {@link #MAX_HEIGHT} (very long operator
+ * chains) are left as they are, as the passes are recursive.
+ */
+public final class RPNOptimizer {
+    public static final int MAX_HEIGHT = 1000;
+
+    private final ConstantFolder constantFolder;
+
+    private final CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+
+    public RPNOptimizer(final FunctionRepository functionRepository) {
+        this.constantFolder = new ConstantFolder(functionRepository.getBuiltinFunctions().values());
+    }
+
+    public RPNProgram optimize(final RPNProgram program) {
+        final ExpressionTree tree = ExpressionTree.fromProgram(program);
+        if (tree == null || getHeight(tree) > MAX_HEIGHT) {
+            return program;
+        }
+        final List<ExpressionNode> roots = new ArrayList<>();
+        boolean changed = false;
+        for (final ExpressionNode root : tree.getRoots()) {
+            final ExpressionNode folded = constantFolder.fold(root);
+            changed |= folded != root;
+            roots.add(folded);
+        }
+        final ExpressionTree eliminated = eliminator.eliminate(new ExpressionTree(roots));
+        return changed || eliminated.hasSharedNodes() ? eliminated.toProgram(program) : program;
+    }
+
+    private static int getHeight(final ExpressionTree tree) {
+        int height = 0;
+        for (final ExpressionNode root : tree.getRoots()) {
+            height = Math.max(height, root.getHeight());
+        }
+        return height;
+    }
+}
@@ -23,12 +23,14 @@
  */
 package calculator.evaluator.rpn.token;
 
+import calculator.tokenizer.DoubleParser;
+
 public class NumberToken extends Token<Double> {
     private final double value;
 
     public NumberToken(final String rawValue) {
         super(rawValue);
-        value = Double.valueOf(getRawValue());
+        value = DoubleParser.parse(rawValue);
     }
 
     @Override
@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.token;
+
+/**
+ * Reference to a function parameter, written as <code>{0}</code>, <code>{1}</code>... in custom function bodies.
+ * Like number literals, parameters may carry a sign (<code>-{0}</code>).
+ */
+public class ParameterToken extends Token<Integer> {
+    private final int index;
+
+    private final boolean negated;
+
+    public ParameterToken(final String rawValue) {
+        super(rawValue);
+        final int open = rawValue.indexOf('{');
+        index = Integer.parseInt(rawValue.substring(open + 1, rawValue.length() - 1));
+        negated = rawValue.charAt(0) == '-';
+    }
+
+    public final boolean isNegated() {
+        return negated;
+    }
+
+    @Override
+    public final TokenType getTokenType() {
+        return TokenType.Parameter;
+    }
+
+    @Override
+    public final Integer getValue() {
+        return Integer.valueOf(index);
+    }
+}
@@ -25,7 +25,7 @@ package calculator.evaluator.rpn.token;
 
 public abstract class Token<T> {
     public static enum TokenType {
-        Number, Function, OpenBracket, ClosedBracket, Comma
+        Number, Function, Parameter, OpenBracket, ClosedBracket, Comma
     }
 
     private final String rawValue;
@@ -25,8 +25,12 @@ package calculator.evaluator.rpn.token;
 
 import calculator.exception.execute.FunctionNotDefinedException;
 import calculator.function.FunctionRepository;
+import calculator.tokenizer.NumberSyntax;
+import java.util.regex.Pattern;
 
 public class TokenFactory {
+    public static final Pattern PARAMETER_PATTERN = Pattern.compile("[+-]?\\{(\\d)\\}");
+
     private final FunctionRepository functionRepository;
 
     public TokenFactory(final FunctionRepository functionRepository) {
@@ -43,6 +47,8 @@ public class TokenFactory {
                 return new BracketToken.Comma(tokenString);
             case Number:
                 return new NumberToken(tokenString);
+            case Parameter:
+                return new ParameterToken(tokenString);
             case Function:
                 return new FunctionToken(tokenString, functionRepository.get(tokenString));
             default:
@@ -60,13 +66,18 @@ public class TokenFactory {
         if (",".equals(tokenString)) {
             return Token.TokenType.Comma;
         }
+        if (tokenString.endsWith("}") && PARAMETER_PATTERN.matcher(tokenString).matches()) {
+            return Token.TokenType.Parameter;
+        }
 
-        try {
-            Double.parseDouble(tokenString);
+        if (isNumber(tokenString)) {
             return Token.TokenType.Number;
-        } catch (NumberFormatException e) {
-            // intentionally left blank
         }
         return Token.TokenType.Function;
     }
+
+    private static boolean isNumber(final String tokenString) {
+        final int from = tokenString.startsWith("+") || tokenString.startsWith("-") ? 1 : 0;
+        return NumberSyntax.isNumber(tokenString, from, tokenString.length());
+    }
 }
@@ -23,8 +23,10 @@
  */
 package calculator.exception.command;
 
+import calculator.exception.StackTraces;
+
 public class CommandParseException extends Exception {
     public CommandParseException(final String message) {
-        super(message);
+        super(message, null, true, StackTraces.isEnabled());
     }
 }
@@ -23,8 +23,10 @@
  */
 package calculator.exception.command;
 
+import calculator.exception.StackTraces;
+
 public class UnknownCommandException extends Exception {
     public UnknownCommandException() {
-        super();
+        super(null, null, true, StackTraces.isEnabled());
     }
 }
@@ -23,8 +23,10 @@
  */
 package calculator.exception.execute;
 
+import calculator.exception.StackTraces;
+
 public class ExpressionExecuteException extends Exception {
     public ExpressionExecuteException(final String message, final Exception e) {
-        super(message, e);
+        super(message, e, true, StackTraces.isEnabled());
     }
 }
@@ -23,12 +23,14 @@
  */
 package calculator.exception.parse;
 
+import calculator.exception.StackTraces;
+
 public class FunctionParseException extends Exception {
     public FunctionParseException(final String message) {
-        super(message);
+        super(message, null, true, StackTraces.isEnabled());
     }
 
     public FunctionParseException(final String message, final Exception e) {
-        super(message, e);
+        super(message, e, true, StackTraces.isEnabled());
     }
 }
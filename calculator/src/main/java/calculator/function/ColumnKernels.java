@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.function;
+
+/**
+ * Element-wise loops shared by the {@linkplain ColumnFunction column kernels} of the arithmetic builtins. Every
+ * method computes exactly what the corresponding scalar operation computes for each element, and the result array
+ * may be one of the argument arrays.
+ * <p>
+ * {@link #get()} returns an implementation using explicit SIMD through the incubating Vector API when the build
+ * included it (the {@code vector} profile, active on JDK 16 and later) and the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}; otherwise, or with {@code -Dcalculator.vector=false}, the plain loops
+ * of {@link Scalar}, which the JIT compiler vectorizes where it can. Remainders, power and signum stay scalar: the
+ * Vector API has no exact counterpart of {@code %}, and its power may differ from {@link Math#pow(double, double)}.
+ */
+public abstract class ColumnKernels {
+    static final String VECTOR_IMPLEMENTATION = "calculator.function.vector.VectorColumnKernels";
+
+    public static final String VECTOR_PROPERTY = "calculator.vector";
+
+    private static final ColumnKernels INSTANCE = select();
+
+    public static ColumnKernels get() {
+        return INSTANCE;
+    }
+
+    private static ColumnKernels select() {
+        if (!"false".equals(System.getProperty(VECTOR_PROPERTY))) {
+            try {
+                return (ColumnKernels) Class.forName(VECTOR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                // not built, or the module is not available: fall back to plain loops
+            }
+        }
+        return new Scalar();
+    }
+
+    /**
+     * @return whether the loops use explicit SIMD instructions
+     */
+    public abstract boolean isVectorized();
+
+    public abstract void add(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    public abstract void add(final double[] lhs, final double rhs, final double[] result, final int length);
+
+    public abstract void subtract(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    public abstract void subtract(final double[] lhs, final double rhs, final double[] result, final int length);
+
+    public abstract void multiply(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    public abstract void multiply(final double[] lhs, final double rhs, final double[] result, final int length);
+
+    public abstract void divide(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    public abstract void divide(final double[] lhs, final double rhs, final double[] result, final int length);
+
+    public abstract void min(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    public abstract void min(final double[] lhs, final double rhs, final double[] result, final int length);
+
+    public abstract void max(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    public abstract void max(final double[] lhs, final double rhs, final double[] result, final int length);
+
+    public abstract void abs(final double[] values, final double[] result, final int length);
+
+    public abstract void negate(final double[] values, final double[] result, final int length);
+
+    public abstract void sqrt(final double[] values, final double[] result, final int length);
+
+    /**
+     * Plain loops, also used by vectorized implementations for the elements past the last full vector.
+     */
+    public static class Scalar extends ColumnKernels {
+        @Override
+        public boolean isVectorized() {
+            return false;
+        }
+
+        @Override
+        public void add(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            add(lhs, rhs, result, 0, length);
+        }
+
+        protected static void add(final double[] lhs, final double[] rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] + rhs[i];
+            }
+        }
+
+        @Override
+        public void add(final double[] lhs, final double rhs, final double[] result, final int length) {
+            add(lhs, rhs, result, 0, length);
+        }
+
+        protected static void add(final double[] lhs, final double rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] + rhs;
+            }
+        }
+
+        @Override
+        public void subtract(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            subtract(lhs, rhs, result, 0, length);
+        }
+
+        protected static void subtract(final double[] lhs, final double[] rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] - rhs[i];
+            }
+        }
+
+        @Override
+        public void subtract(final double[] lhs, final double rhs, final double[] result, final int length) {
+            subtract(lhs, rhs, result, 0, length);
+        }
+
+        protected static void subtract(final double[] lhs, final double rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] - rhs;
+            }
+        }
+
+        @Override
+        public void multiply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            multiply(lhs, rhs, result, 0, length);
+        }
+
+        protected static void multiply(final double[] lhs, final double[] rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] * rhs[i];
+            }
+        }
+
+        @Override
+        public void multiply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            multiply(lhs, rhs, result, 0, length);
+        }
+
+        protected static void multiply(final double[] lhs, final double rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] * rhs;
+            }
+        }
+
+        @Override
+        public void divide(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            divide(lhs, rhs, result, 0, length);
+        }
+
+        protected static void divide(final double[] lhs, final double[] rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] / rhs[i];
+            }
+        }
+
+        @Override
+        public void divide(final double[] lhs, final double rhs, final double[] result, final int length) {
+            divide(lhs, rhs, result, 0, length);
+        }
+
+        protected static void divide(final double[] lhs, final double rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = lhs[i] / rhs;
+            }
+        }
+
+        @Override
+        public void min(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            min(lhs, rhs, result, 0, length);
+        }
+
+        protected static void min(final double[] lhs, final double[] rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = Math.min(lhs[i], rhs[i]);
+            }
+        }
+
+        @Override
+        public void min(final double[] lhs, final double rhs, final double[] result, final int length) {
+            min(lhs, rhs, result, 0, length);
+        }
+
+        protected static void min(final double[] lhs, final double rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = Math.min(lhs[i], rhs);
+            }
+        }
+
+        @Override
+        public void max(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            max(lhs, rhs, result, 0, length);
+        }
+
+        protected static void max(final double[] lhs, final double[] rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = Math.max(lhs[i], rhs[i]);
+            }
+        }
+
+        @Override
+        public void max(final double[] lhs, final double rhs, final double[] result, final int length) {
+            max(lhs, rhs, result, 0, length);
+        }
+
+        protected static void max(final double[] lhs, final double rhs, final double[] result, final int from,
+                final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = Math.max(lhs[i], rhs);
+            }
+        }
+
+        @Override
+        public void abs(final double[] values, final double[] result, final int length) {
+            abs(values, result, 0, length);
+        }
+
+        protected static void abs(final double[] values, final double[] result, final int from, final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = Math.abs(values[i]);
+            }
+        }
+
+        @Override
+        public void negate(final double[] values, final double[] result, final int length) {
+            negate(values, result, 0, length);
+        }
+
+        protected static void negate(final double[] values, final double[] result, final int from, final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = -values[i];
+            }
+        }
+
+        @Override
+        public void sqrt(final double[] values, final double[] result, final int length) {
+            sqrt(values, result, 0, length);
+        }
+
+        protected static void sqrt(final double[] values, final double[] result, final int from, final int to) {
+            for (int i = from; i < to; ++i) {
+                result[i] = Math.sqrt(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.function;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * Unsynchronized, growable stack of primitive doubles used as the operand stack during evaluation. Mirrors the
+ * parts of {@link java.util.Stack} the evaluator relies on, including {@link EmptyStackException} on underflow.
+ * <p>
+ * A floor can be set to open a call frame: values below the floor stay readable through {@link #get(int)} but
+ * cannot be popped, so a function body sees an empty stack exactly as if it was evaluated on its own.
+ * <p>
+ * The stack also carries the definitions the evaluation started with, so that function bodies called during the
+ * evaluation are resolved in them rather than in definitions modified meanwhile.
+ */
+public final class DoubleStack {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] elements;
+
+    private int size = 0;
+
+    private int floor = 0;
+
+    private FunctionRepository definitions;
+
+    public DoubleStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DoubleStack(final int initialCapacity) {
+        elements = new double[Math.max(initialCapacity, 1)];
+    }
+
+    public void push(final double value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * Pushes without making room; only for callers that {@linkplain #ensureCapacity(int) ensured} it beforehand.
+     */
+    public void pushUnchecked(final double value) {
+        elements[size++] = value;
+    }
+
+    /**
+     * Makes room for pushing the given number of values without growing.
+     */
+    public void ensureCapacity(final int additional) {
+        if (size + additional > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(size + additional, elements.length * 2));
+        }
+    }
+
+    public double pop() {
+        if (size == floor) {
+            throw new EmptyStackException();
+        }
+        return elements[--size];
+    }
+
+    /**
+     * Pops without checking the floor; only for callers that know the stack holds enough values.
+     */
+    public double popUnchecked() {
+        return elements[--size];
+    }
+
+    public double peek() {
+        if (size == floor) {
+            throw new EmptyStackException();
+        }
+        return elements[size - 1];
+    }
+
+    public double get(final int index) {
+        return elements[index];
+    }
+
+    public void set(final int index, final double value) {
+        elements[index] = value;
+    }
+
+    public boolean isEmpty() {
+        return size == floor;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public void setFloor(final int floor) {
+        this.floor = floor;
+    }
+
+    /**
+     * @return snapshot of the definitions of the running evaluation, or {@code null} outside of one
+     */
+    public FunctionRepository getDefinitions() {
+        return definitions;
+    }
+
+    public void setDefinitions(final FunctionRepository definitions) {
+        this.definitions = definitions;
+    }
+
+    public void truncate(final int newSize) {
+        size = newSize;
+    }
+
+    public void clear() {
+        size = 0;
+        floor = 0;
+    }
+}
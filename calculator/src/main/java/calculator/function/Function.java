@@ -24,7 +24,6 @@
 package calculator.function;
 
 import calculator.exception.execute.ExpressionExecuteException;
-import java.util.Stack;
 
 public interface Function {
     public static enum Associativity {
@@ -35,5 +34,7 @@ public interface Function {
 
     Associativity getAssociativity();
 
-    void apply(Stack<Double> stack) throws ExpressionExecuteException;
+    int getNumberOfParams();
+
+    void apply(DoubleStack stack) throws ExpressionExecuteException;
 }
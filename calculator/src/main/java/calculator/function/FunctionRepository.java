@@ -39,4 +39,17 @@ public interface FunctionRepository {
     Map<String, Function> getBuiltinFunctions();
 
     Map<String, Function> getFunctions();
+
+    /**
+     * Finds a defined name without creating a string for it.
+     *
+     * @return the key in {@link #getFunctions()} or {@link #getBuiltinFunctions()} equal to {@code input} between
+     *      {@code start} and {@code end}, or {@code null} if no such name is defined
+     */
+    String findName(final CharSequence input, final int start, final int end);
+
+    /**
+     * Returns a read-only view of the definitions as they are now, unaffected by later modifications.
+     */
+    FunctionRepository snapshot();
 }
@@ -37,4 +37,9 @@ public abstract class AbstractConstant implements Function {
     public final Associativity getAssociativity() {
         return Associativity.Left;
     }
+
+    @Override
+    public final int getNumberOfParams() {
+        return 0;
+    }
 }
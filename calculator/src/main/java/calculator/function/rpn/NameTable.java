@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.function.rpn;
+
+import java.util.Collection;
+
+/**
+ * Open addressing set of names which can be searched for by a region of a character sequence, so that a name found
+ * in an expression can be resolved without creating a string for it.
+ */
+final class NameTable {
+    private final String[] names;
+
+    private final int mask;
+
+    NameTable(final Collection<String> first, final Collection<String> second) {
+        int capacity = 8;
+        while (capacity < 2 * (first.size() + second.size())) {
+            capacity <<= 1;
+        }
+        names = new String[capacity];
+        mask = capacity - 1;
+        for (final String name : first) {
+            add(name);
+        }
+        for (final String name : second) {
+            add(name);
+        }
+    }
+
+    private void add(final String name) {
+        int slot = index(name.hashCode());
+        while (names[slot] != null) {
+            if (names[slot].equals(name)) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        names[slot] = name;
+    }
+
+    /**
+     * @return the name equal to {@code input} between {@code start} and {@code end}, or {@code null}
+     */
+    String find(final CharSequence input, final int start, final int end) {
+        final int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; ++i) {
+            hash = 31 * hash + input.charAt(i);
+        }
+        for (int slot = index(hash); names[slot] != null; slot = (slot + 1) & mask) {
+            final String name = names[slot];
+            if (name.length() == length && regionMatches(name, input, start)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(final String name, final CharSequence input, final int start) {
+        for (int i = 0; i < name.length(); ++i) {
+            if (name.charAt(i) != input.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(final int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
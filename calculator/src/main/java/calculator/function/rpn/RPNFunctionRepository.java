@@ -31,15 +31,23 @@ import calculator.function.FunctionRepository;
 import calculator.function.rpn.builtin.BinaryOperatorFunction;
 import calculator.function.rpn.builtin.BuiltinConstant;
 import calculator.function.rpn.builtin.BuiltinFunction;
+import calculator.jfr.RepositoryUpdateEvent;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+/**
+ * Repository safe for concurrent use. User definitions are kept in immutable versions: readers take the current
+ * version with a single volatile read and never block, while writers, serialized among themselves, publish a
+ * modified copy. Every version is published together with its snapshot, so taking one allocates nothing.
+ */
 public class RPNFunctionRepository implements FunctionRepository {
     private final Map<String, Function> builtinFunctions = new HashMap<>();
 
-    private final Map<String, Function> functions = new HashMap<>();
+    private final Map<String, Function> builtinView = Collections.unmodifiableMap(builtinFunctions);
+
+    private volatile Snapshot current;
 
     private final Pattern namePattern = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]*");
 
@@ -47,6 +55,7 @@ public class RPNFunctionRepository implements FunctionRepository {
         initOperators();
         initFunctions();
         initConstants();
+        current = new Snapshot(builtinView, Collections.<String, Function>emptyMap());
     }
 
     private void initOperators() {
@@ -89,6 +98,11 @@ public class RPNFunctionRepository implements FunctionRepository {
 
     @Override
     public Function get(final String name) throws FunctionNotDefinedException {
+        return get(builtinFunctions, current.functions, name);
+    }
+
+    private static Function get(final Map<String, Function> builtinFunctions, final Map<String, Function> functions,
+            final String name) throws FunctionNotDefinedException {
         final Function tempFunction = functions.get(name);
         if (tempFunction != null) {
             return tempFunction;
@@ -111,26 +125,114 @@ public class RPNFunctionRepository implements FunctionRepository {
         if (builtinFunctions.containsKey(name)) {
             throw new FunctionAlreadyExistsException(name);
         }
-        functions.put(name, function);
+        final RepositoryUpdateEvent event = new RepositoryUpdateEvent();
+        event.begin();
+        synchronized (this) {
+            final Map<String, Function> modified = new HashMap<>(current.functions);
+            modified.put(name, function);
+            current = new Snapshot(builtinView, Collections.unmodifiableMap(modified));
+        }
+        event.record("update", name);
     }
 
     @Override
     public void delete(final String name) {
-        functions.remove(name);
+        final RepositoryUpdateEvent event = new RepositoryUpdateEvent();
+        event.begin();
+        synchronized (this) {
+            if (current.functions.containsKey(name)) {
+                final Map<String, Function> modified = new HashMap<>(current.functions);
+                modified.remove(name);
+                current = new Snapshot(builtinView, Collections.unmodifiableMap(modified));
+            }
+        }
+        event.record("delete", name);
     }
 
     @Override
     public void clear() {
-        functions.clear();
+        final RepositoryUpdateEvent event = new RepositoryUpdateEvent();
+        event.begin();
+        synchronized (this) {
+            current = new Snapshot(builtinView, Collections.<String, Function>emptyMap());
+        }
+        event.record("clear", null);
     }
 
     @Override
     public Map<String, Function> getBuiltinFunctions() {
-        return Collections.unmodifiableMap(builtinFunctions);
+        return builtinView;
     }
 
+    /**
+     * @return the current version of user definitions, which never changes
+     */
     @Override
     public Map<String, Function> getFunctions() {
-        return Collections.unmodifiableMap(functions);
+        return current.functions;
+    }
+
+    @Override
+    public String findName(final CharSequence input, final int start, final int end) {
+        return current.findName(input, start, end);
+    }
+
+    @Override
+    public FunctionRepository snapshot() {
+        return current;
+    }
+
+    private static final class Snapshot implements FunctionRepository {
+        private final Map<String, Function> builtinFunctions;
+
+        private final Map<String, Function> functions;
+
+        private final NameTable names;
+
+        Snapshot(final Map<String, Function> builtinFunctions, final Map<String, Function> functions) {
+            this.builtinFunctions = builtinFunctions;
+            this.functions = functions;
+            this.names = new NameTable(builtinFunctions.keySet(), functions.keySet());
+        }
+
+        @Override
+        public Function get(final String name) throws FunctionNotDefinedException {
+            return RPNFunctionRepository.get(builtinFunctions, functions, name);
+        }
+
+        @Override
+        public void update(final String name, final Function function) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public void delete(final String name) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public Map<String, Function> getBuiltinFunctions() {
+            return builtinFunctions;
+        }
+
+        @Override
+        public Map<String, Function> getFunctions() {
+            return functions;
+        }
+
+        @Override
+        public String findName(final CharSequence input, final int start, final int end) {
+            return names.find(input, start, end);
+        }
+
+        @Override
+        public FunctionRepository snapshot() {
+            return this;
+        }
     }
 }
@@ -24,38 +24,62 @@
 package calculator.function.rpn.builtin;
 
 import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.BroadcastFunction;
+import calculator.function.ColumnKernels;
+import calculator.function.DoubleStack;
 import calculator.function.Function;
+import calculator.function.PureFunction;
+import calculator.function.UncheckedFunction;
+import java.util.Arrays;
 import java.util.EmptyStackException;
-import java.util.Stack;
 
-public abstract class BinaryOperatorFunction implements Function {
+public abstract class BinaryOperatorFunction implements PureFunction, BroadcastFunction, UncheckedFunction {
+    private static final ColumnKernels KERNELS = ColumnKernels.get();
+
     protected static final int PRIORITY_ADDITIVE = 1;
 
     protected static final int PRIORITY_MULTIPLICATIVE = 2;
 
     protected static final int PRIORITY_POWER = 3;
 
-    private double lhs;
-
-    private double rhs;
-
-    protected final double getLhs() {
-        return lhs;
+    @Override
+    public final int getNumberOfParams() {
+        return 2;
     }
 
-    protected final double getRhs() {
-        return rhs;
+    @Override
+    public final void apply(final double[][] args, final double[] result, final int length) {
+        apply(args[0], args[1], result, length);
     }
 
-    protected final void prepareParams(final Stack<Double> stack) throws NotEnoughParametersException {
+    protected abstract void apply(final double[] lhs, final double[] rhs, final double[] result, final int length);
+
+    /**
+     * Operands are kept in local variables only, so that the shared instances of operators can be applied by any
+     * number of threads at once.
+     */
+    @Override
+    public final void apply(final DoubleStack stack) throws NotEnoughParametersException {
+        final double rhs;
+        final double lhs;
         try {
             rhs = stack.pop();
             lhs = stack.pop();
         } catch (final EmptyStackException e) {
             throw new NotEnoughParametersException("operator", e);
         }
+        stack.push(apply(lhs, rhs));
+    }
+
+    @Override
+    public final void applyUnchecked(final DoubleStack stack) {
+        final double rhs = stack.popUnchecked();
+        final double lhs = stack.popUnchecked();
+        stack.pushUnchecked(apply(lhs, rhs));
     }
 
+    protected abstract double apply(final double lhs, final double rhs);
+
     public static final class Add extends BinaryOperatorFunction {
         @Override
         public int getPriority() {
@@ -68,9 +92,18 @@ public abstract class BinaryOperatorFunction implements Function {
         }
 
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            prepareParams(stack);
-            stack.push(getLhs() + getRhs());
+        protected double apply(final double lhs, final double rhs) {
+            return lhs + rhs;
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            KERNELS.add(lhs, rhs, result, length);
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            KERNELS.add(lhs, rhs, result, length);
         }
     }
 
@@ -86,9 +119,18 @@ public abstract class BinaryOperatorFunction implements Function {
         }
 
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            prepareParams(stack);
-            stack.push(getLhs() - getRhs());
+        protected double apply(final double lhs, final double rhs) {
+            return lhs - rhs;
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            KERNELS.subtract(lhs, rhs, result, length);
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            KERNELS.subtract(lhs, rhs, result, length);
         }
     }
 
@@ -104,9 +146,18 @@ public abstract class BinaryOperatorFunction implements Function {
         }
 
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            prepareParams(stack);
-            stack.push(getLhs() * getRhs());
+        protected double apply(final double lhs, final double rhs) {
+            return lhs * rhs;
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            KERNELS.multiply(lhs, rhs, result, length);
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            KERNELS.multiply(lhs, rhs, result, length);
         }
     }
 
@@ -122,9 +173,18 @@ public abstract class BinaryOperatorFunction implements Function {
         }
 
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            prepareParams(stack);
-            stack.push(getLhs() / getRhs());
+        protected double apply(final double lhs, final double rhs) {
+            return lhs / rhs;
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            KERNELS.divide(lhs, rhs, result, length);
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            KERNELS.divide(lhs, rhs, result, length);
         }
     }
 
@@ -140,9 +200,22 @@ public abstract class BinaryOperatorFunction implements Function {
         }
 
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            prepareParams(stack);
-            stack.push(getLhs() % getRhs());
+        protected double apply(final double lhs, final double rhs) {
+            return lhs % rhs;
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = lhs[i] % rhs[i];
+            }
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = lhs[i] % rhs;
+            }
         }
     }
 
@@ -158,9 +231,32 @@ public abstract class BinaryOperatorFunction implements Function {
         }
 
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            prepareParams(stack);
-            stack.push(Math.pow(getLhs(), getRhs()));
+        protected double apply(final double lhs, final double rhs) {
+            return Math.pow(lhs, rhs);
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.pow(lhs[i], rhs[i]);
+            }
+        }
+
+        /**
+         * Exponents 0 and 1 skip {@link Math#pow(double, double)}, which specifies exactly 1 and the base for them.
+         * Other exponents, 2 included, go through it, since {@code x*x} may differ from it in the last place.
+         */
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            if (rhs == 0.0) {
+                Arrays.fill(result, 0, length, 1.0);
+            } else if (rhs == 1.0) {
+                System.arraycopy(lhs, 0, result, 0, length);
+            } else {
+                for (int i = 0; i < length; ++i) {
+                    result[i] = Math.pow(lhs[i], rhs);
+                }
+            }
         }
     }
 }
@@ -23,21 +23,47 @@
  */
 package calculator.function.rpn.builtin;
 
+import calculator.function.ColumnFunction;
+import calculator.function.DoubleStack;
+import calculator.function.PureFunction;
+import calculator.function.UncheckedFunction;
 import calculator.function.rpn.AbstractConstant;
-import java.util.Stack;
+import java.util.Arrays;
 
 public abstract class BuiltinConstant {
-    public static final class Pi extends AbstractConstant {
+    public static final class Pi extends AbstractConstant implements PureFunction, ColumnFunction,
+            UncheckedFunction {
         @Override
-        public void apply(final Stack<Double> stack) {
+        public void apply(final DoubleStack stack) {
             stack.push(Math.PI);
         }
+
+        @Override
+        public void applyUnchecked(final DoubleStack stack) {
+            stack.pushUnchecked(Math.PI);
+        }
+
+        @Override
+        public void apply(final double[][] args, final double[] result, final int length) {
+            Arrays.fill(result, 0, length, Math.PI);
+        }
     }
 
-    public static final class E extends AbstractConstant {
+    public static final class E extends AbstractConstant implements PureFunction, ColumnFunction,
+            UncheckedFunction {
         @Override
-        public void apply(final Stack<Double> stack) {
+        public void apply(final DoubleStack stack) {
             stack.push(Math.E);
         }
+
+        @Override
+        public void applyUnchecked(final DoubleStack stack) {
+            stack.pushUnchecked(Math.E);
+        }
+
+        @Override
+        public void apply(final double[][] args, final double[] result, final int length) {
+            Arrays.fill(result, 0, length, Math.E);
+        }
     }
 }
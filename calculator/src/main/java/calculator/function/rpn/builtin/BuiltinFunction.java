@@ -24,251 +24,454 @@
 package calculator.function.rpn.builtin;
 
 import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.BroadcastFunction;
+import calculator.function.ColumnFunction;
+import calculator.function.ColumnKernels;
+import calculator.function.DoubleStack;
+import calculator.function.PureFunction;
+import calculator.function.UncheckedFunction;
 import calculator.function.rpn.AbstractFunction;
 import java.util.EmptyStackException;
-import java.util.Stack;
 
 public final class BuiltinFunction {
-    public static final class Sin extends AbstractFunction {
+    private static final ColumnKernels KERNELS = ColumnKernels.get();
+
+    public abstract static class UnaryFunction extends AbstractFunction implements PureFunction, ColumnFunction,
+            UncheckedFunction {
+        private final String name;
+
+        protected UnaryFunction(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public final int getNumberOfParams() {
+            return 1;
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
+        public final void apply(final DoubleStack stack) throws NotEnoughParametersException {
             try {
-                final double val = stack.pop();
-                stack.push(Math.sin(val));
+                stack.push(apply(stack.pop()));
             } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("sin", e);
+                throw new NotEnoughParametersException(name, e);
             }
         }
+
+        @Override
+        public final void applyUnchecked(final DoubleStack stack) {
+            stack.pushUnchecked(apply(stack.popUnchecked()));
+        }
+
+        protected abstract double apply(final double value);
+
+        @Override
+        public final void apply(final double[][] args, final double[] result, final int length) {
+            apply(args[0], result, length);
+        }
+
+        protected abstract void apply(final double[] values, final double[] result, final int length);
     }
 
-    public static final class Cos extends AbstractFunction {
+    public abstract static class BinaryFunction extends AbstractFunction implements PureFunction, ColumnFunction,
+            UncheckedFunction {
+        private final String name;
+
+        protected BinaryFunction(final String name) {
+            this.name = name;
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
+        public final int getNumberOfParams() {
+            return 2;
+        }
+
+        @Override
+        public final void apply(final DoubleStack stack) throws NotEnoughParametersException {
             try {
-                final double val = stack.pop();
-                stack.push(Math.cos(val));
+                final double rhs = stack.pop();
+                final double lhs = stack.pop();
+                stack.push(apply(lhs, rhs));
             } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("cos", e);
+                throw new NotEnoughParametersException(name, e);
             }
         }
+
+        @Override
+        public final void applyUnchecked(final DoubleStack stack) {
+            final double rhs = stack.popUnchecked();
+            final double lhs = stack.popUnchecked();
+            stack.pushUnchecked(apply(lhs, rhs));
+        }
+
+        protected abstract double apply(final double lhs, final double rhs);
+
+        @Override
+        public final void apply(final double[][] args, final double[] result, final int length) {
+            apply(args[0], args[1], result, length);
+        }
+
+        protected abstract void apply(final double[] lhs, final double[] rhs, final double[] result,
+                final int length);
     }
 
-    public static final class Tan extends AbstractFunction {
+    public static final class Sin extends UnaryFunction {
+        public Sin() {
+            super("sin");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.tan(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("tan", e);
+        protected double apply(final double value) {
+            return Math.sin(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.sin(values[i]);
             }
         }
     }
 
-    public static final class ArcSin extends AbstractFunction {
+    public static final class Cos extends UnaryFunction {
+        public Cos() {
+            super("cos");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.asin(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("asin", e);
+        protected double apply(final double value) {
+            return Math.cos(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.cos(values[i]);
             }
         }
     }
 
-    public static final class ArcCos extends AbstractFunction {
+    public static final class Tan extends UnaryFunction {
+        public Tan() {
+            super("tan");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.acos(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("acos", e);
+        protected double apply(final double value) {
+            return Math.tan(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.tan(values[i]);
             }
         }
     }
 
-    public static final class ArcTan extends AbstractFunction {
+    public static final class ArcSin extends UnaryFunction {
+        public ArcSin() {
+            super("asin");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.atan(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("atan", e);
+        protected double apply(final double value) {
+            return Math.asin(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.asin(values[i]);
             }
         }
     }
 
-    public static final class ArcTan2 extends AbstractFunction {
+    public static final class ArcCos extends UnaryFunction {
+        public ArcCos() {
+            super("acos");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val2 = stack.pop();
-                final double val1 = stack.pop();
-                stack.push(Math.atan2(val1, val2));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("atan2", e);
+        protected double apply(final double value) {
+            return Math.acos(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.acos(values[i]);
             }
         }
     }
 
-    public static final class SinHyperbolic extends AbstractFunction {
+    public static final class ArcTan extends UnaryFunction {
+        public ArcTan() {
+            super("atan");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.sinh(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("sinh", e);
+        protected double apply(final double value) {
+            return Math.atan(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.atan(values[i]);
             }
         }
     }
 
-    public static final class CosHyperbolic extends AbstractFunction {
+    public static final class ArcTan2 extends BinaryFunction {
+        public ArcTan2() {
+            super("atan2");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.cosh(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("cosh", e);
+        protected double apply(final double lhs, final double rhs) {
+            return Math.atan2(lhs, rhs);
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.atan2(lhs[i], rhs[i]);
             }
         }
     }
 
-    public static final class TanHyperbolic extends AbstractFunction {
+    public static final class SinHyperbolic extends UnaryFunction {
+        public SinHyperbolic() {
+            super("sinh");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.tanh(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("tanh", e);
+        protected double apply(final double value) {
+            return Math.sinh(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.sinh(values[i]);
             }
         }
     }
 
-    public static final class AbsoluteValue extends AbstractFunction {
+    public static final class CosHyperbolic extends UnaryFunction {
+        public CosHyperbolic() {
+            super("cosh");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.abs(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("abs", e);
+        protected double apply(final double value) {
+            return Math.cosh(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.cosh(values[i]);
             }
         }
     }
 
-    public static final class Log extends AbstractFunction {
+    public static final class TanHyperbolic extends UnaryFunction {
+        public TanHyperbolic() {
+            super("tanh");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.log(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("log", e);
+        protected double apply(final double value) {
+            return Math.tanh(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.tanh(values[i]);
             }
         }
     }
 
-    public static final class Exp extends AbstractFunction {
+    public static final class AbsoluteValue extends UnaryFunction {
+        public AbsoluteValue() {
+            super("abs");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.exp(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("exp", e);
-            }
+        protected double apply(final double value) {
+            return Math.abs(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            KERNELS.abs(values, result, length);
         }
     }
 
-    public static final class Signum extends AbstractFunction {
+    public static final class Log extends UnaryFunction {
+        public Log() {
+            super("log");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.signum(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("sgn", e);
+        protected double apply(final double value) {
+            return Math.log(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.log(values[i]);
             }
         }
     }
 
-    public static final class SquareRoot extends AbstractFunction {
+    public static final class Exp extends UnaryFunction {
+        public Exp() {
+            super("exp");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.sqrt(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("sqrt", e);
+        protected double apply(final double value) {
+            return Math.exp(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.exp(values[i]);
             }
         }
     }
 
-    public static final class DegreesToRadians extends AbstractFunction {
+    public static final class Signum extends UnaryFunction {
+        public Signum() {
+            super("sgn");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.toRadians(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("d2r", e);
+        protected double apply(final double value) {
+            return Math.signum(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.signum(values[i]);
             }
         }
     }
 
-    public static final class RadiansToDegrees extends AbstractFunction {
+    public static final class SquareRoot extends UnaryFunction {
+        public SquareRoot() {
+            super("sqrt");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(Math.toDegrees(val));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("r2d", e);
-            }
+        protected double apply(final double value) {
+            return Math.sqrt(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            KERNELS.sqrt(values, result, length);
         }
     }
 
-    public static final class Min extends AbstractFunction {
+    public static final class DegreesToRadians extends UnaryFunction {
+        public DegreesToRadians() {
+            super("d2r");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val2 = stack.pop();
-                final double val1 = stack.pop();
-                stack.push(Math.min(val1, val2));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("min", e);
+        protected double apply(final double value) {
+            return Math.toRadians(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.toRadians(values[i]);
             }
         }
     }
 
-    public static final class Max extends AbstractFunction {
+    public static final class RadiansToDegrees extends UnaryFunction {
+        public RadiansToDegrees() {
+            super("r2d");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val2 = stack.pop();
-                final double val1 = stack.pop();
-                stack.push(Math.max(val1, val2));
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("max", e);
+        protected double apply(final double value) {
+            return Math.toDegrees(value);
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            for (int i = 0; i < length; ++i) {
+                result[i] = Math.toDegrees(values[i]);
             }
         }
     }
 
-    public static final class Negation extends AbstractFunction {
+    public static final class Min extends BinaryFunction implements BroadcastFunction {
+        public Min() {
+            super("min");
+        }
+
         @Override
-        public void apply(final Stack<Double> stack) throws NotEnoughParametersException {
-            try {
-                final double val = stack.pop();
-                stack.push(-val);
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException("neg", e);
-            }
+        protected double apply(final double lhs, final double rhs) {
+            return Math.min(lhs, rhs);
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            KERNELS.min(lhs, rhs, result, length);
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            KERNELS.min(lhs, rhs, result, length);
+        }
+    }
+
+    public static final class Max extends BinaryFunction implements BroadcastFunction {
+        public Max() {
+            super("max");
+        }
+
+        @Override
+        protected double apply(final double lhs, final double rhs) {
+            return Math.max(lhs, rhs);
+        }
+
+        @Override
+        protected void apply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+            KERNELS.max(lhs, rhs, result, length);
+        }
+
+        @Override
+        public void apply(final double[] lhs, final double rhs, final double[] result, final int length) {
+            KERNELS.max(lhs, rhs, result, length);
+        }
+    }
+
+    public static final class Negation extends UnaryFunction {
+        public Negation() {
+            super("neg");
+        }
+
+        @Override
+        protected double apply(final double value) {
+            return -value;
+        }
+
+        @Override
+        protected void apply(final double[] values, final double[] result, final int length) {
+            KERNELS.negate(values, result, length);
         }
     }
 }
@@ -23,10 +23,14 @@
  */
 package calculator.function.rpn.builtin;
 
+import calculator.function.ColumnFunction;
+import calculator.function.DoubleStack;
+import calculator.function.PureFunction;
+import calculator.function.UncheckedFunction;
 import calculator.function.rpn.AbstractConstant;
-import java.util.Stack;
+import java.util.Arrays;
 
-public class DoubleConstant extends AbstractConstant {
+public class DoubleConstant extends AbstractConstant implements PureFunction, ColumnFunction, UncheckedFunction {
     private final double value;
 
     public DoubleConstant(final double value) {
@@ -34,8 +38,22 @@ public class DoubleConstant extends AbstractConstant {
         this.value = value;
     }
 
+    public double getValue() {
+        return value;
+    }
+
     @Override
-    public void apply(final Stack<Double> stack) {
+    public void apply(final DoubleStack stack) {
         stack.push(value);
     }
+
+    @Override
+    public void applyUnchecked(final DoubleStack stack) {
+        stack.pushUnchecked(value);
+    }
+
+    @Override
+    public void apply(final double[][] args, final double[] result, final int length) {
+        Arrays.fill(result, 0, length, value);
+    }
 }
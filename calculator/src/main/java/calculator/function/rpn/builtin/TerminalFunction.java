@@ -23,8 +23,8 @@
  */
 package calculator.function.rpn.builtin;
 
+import calculator.function.DoubleStack;
 import calculator.function.Function;
-import java.util.Stack;
 
 public final class TerminalFunction implements Function {
     public static final int PRIORITY_TERMINAL = -1;
@@ -40,7 +40,12 @@ public final class TerminalFunction implements Function {
     }
 
     @Override
-    public void apply(final Stack<Double> stack) {
+    public int getNumberOfParams() {
+        return 0;
+    }
+
+    @Override
+    public void apply(final DoubleStack stack) {
         // nothing to do
     }
 }
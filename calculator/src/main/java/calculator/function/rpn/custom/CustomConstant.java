@@ -25,8 +25,8 @@ package calculator.function.rpn.custom;
 
 import calculator.exception.execute.ExpressionExecuteException;
 import calculator.exception.parse.ConstantWithParametersException;
+import calculator.function.DoubleStack;
 import calculator.function.rpn.AbstractConstant;
-import java.util.Stack;
 
 public class CustomConstant extends AbstractConstant {
     private final FunctionExecutor executor;
@@ -39,8 +39,12 @@ public class CustomConstant extends AbstractConstant {
         this.executor = executor;
     }
 
+    public FunctionExecutor getExecutor() {
+        return executor;
+    }
+
     @Override
-    public void apply(Stack<Double> stack) throws ExpressionExecuteException {
+    public void apply(DoubleStack stack) throws ExpressionExecuteException {
         executor.execute(stack);
     }
 }
@@ -25,8 +25,8 @@ package calculator.function.rpn.custom;
 
 import calculator.exception.execute.ExpressionExecuteException;
 import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.DoubleStack;
 import calculator.function.rpn.AbstractFunction;
-import java.util.Stack;
 
 public class CustomFunction extends AbstractFunction {
     private final FunctionExecutor executor;
@@ -36,8 +36,17 @@ public class CustomFunction extends AbstractFunction {
         this.executor = executor;
     }
 
+    public FunctionExecutor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public int getNumberOfParams() {
+        return executor.getNumberOfParams();
+    }
+
     @Override
-    public void apply(final Stack<Double> stack) throws NotEnoughParametersException, ExpressionExecuteException {
+    public void apply(final DoubleStack stack) throws NotEnoughParametersException, ExpressionExecuteException {
         executor.execute(stack);
     }
 }
@@ -24,10 +24,10 @@
 package calculator.function.rpn.custom;
 
 import calculator.exception.execute.ExpressionExecuteException;
-import java.util.Stack;
+import calculator.function.DoubleStack;
 
 public interface FunctionExecutor {
     int getNumberOfParams();
 
-    void execute(final Stack<Double> stack) throws ExpressionExecuteException;
+    void execute(final DoubleStack stack) throws ExpressionExecuteException;
 }
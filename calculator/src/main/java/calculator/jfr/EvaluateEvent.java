@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.jfr;
+
+import calculator.evaluator.CompiledExpression;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("calculator.Evaluate")
+@Label("Evaluate")
+@Category("Calculator")
+@Description("Evaluation of an expression, including its compilation unless it was cached")
+@Threshold("1 ms")
+public final class EvaluateEvent extends AbstractCalculatorEvent {
+    @Label("Tokens")
+    int tokenCount;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * Ends the event and commits it, if it took longer than its threshold.
+     */
+    public void record(final String expression, final CompiledExpression compiled, final boolean failure) {
+        end();
+        if (shouldCommit()) {
+            expressionLength = expression.length();
+            tokenCount = compiled.getTokenCount();
+            failed = failure;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.EvaluationResult;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.FunctionNotDefinedException;
+import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.Function;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Evaluation counts, times and errors, overall and per function name.
+ * <p>
+ * Metrics are disabled at first. While they are, evaluators compile exactly the programs they compile without
+ * metrics, so there is no cost at all. Expressions compiled while metrics are enabled are instrumented: their
+ * evaluations and the calls of every function in them are counted and timed. Owners of compiled expression caches
+ * should register a {@linkplain #addListener(Runnable) listener} to drop them when metrics are switched, so that
+ * the change takes effect everywhere; instrumented expressions that are still around only check the switch.
+ */
+public final class EvaluationMetrics implements EvaluationMetricsMXBean {
+    private static final String OBJECT_NAME = "calculator:type=EvaluationMetrics,name=";
+
+    private static final AtomicInteger REGISTERED = new AtomicInteger();
+
+    private static final int SLOWEST_EXPRESSIONS = 10;
+
+    private volatile boolean enabled = false;
+
+    private final LongAdder evaluations = new LongAdder();
+
+    private final LongAdder evaluationErrors = new LongAdder();
+
+    private final LongAdder evaluationTimeNanos = new LongAdder();
+
+    private final LongAdder notEnoughParametersErrors = new LongAdder();
+
+    private final LongAdder undefinedFunctionErrors = new LongAdder();
+
+    private final ConcurrentMap<String, FunctionCounters> functions = new ConcurrentHashMap<>();
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private final ExpressionLatencies latencies = new ExpressionLatencies();
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            latencies.setEnabled(enabled);
+            for (final Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Latencies of whole evaluations by expression fingerprint, enabled together with the other metrics but recorded
+     * by the owner of the evaluator.
+     */
+    public ExpressionLatencies getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @param listener called whenever metrics are switched on or off
+     */
+    public void addListener(final Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Wraps a function of a program so that its calls are counted under the given name.
+     */
+    public Function instrument(final String name, final Function function) {
+        FunctionCounters counters = functions.get(name);
+        if (counters == null) {
+            final FunctionCounters created = new FunctionCounters();
+            counters = functions.putIfAbsent(name, created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        return new InstrumentedFunction(function, this, counters);
+    }
+
+    /**
+     * Wraps a compiled expression so that its evaluations are counted.
+     */
+    public CompiledExpression instrument(final CompiledExpression expression) {
+        return new InstrumentedExpression(expression, this);
+    }
+
+    /**
+     * Counts an expression that could not be compiled.
+     */
+    public void recordCompileError(final ExpressionExecuteException ex) {
+        evaluationErrors.increment();
+        classify(ex);
+    }
+
+    /**
+     * Counts an expression that was found invalid without an exception.
+     */
+    public void recordCompileError(final EvaluationResult failure) {
+        evaluationErrors.increment();
+        if (failure.getError() == EvaluationResult.Error.NotEnoughParameters) {
+            notEnoughParametersErrors.increment();
+        } else if (failure.getError() == EvaluationResult.Error.UndefinedFunction) {
+            undefinedFunctionErrors.increment();
+        }
+    }
+
+    void recordEvaluation(final long nanos) {
+        evaluations.increment();
+        evaluationTimeNanos.add(nanos);
+    }
+
+    void recordFailedEvaluation(final long nanos, final ExpressionExecuteException ex) {
+        recordEvaluation(nanos);
+        evaluationErrors.increment();
+        classify(ex);
+    }
+
+    private void classify(final Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NotEnoughParametersException) {
+                notEnoughParametersErrors.increment();
+                return;
+            }
+            if (cause instanceof FunctionNotDefinedException) {
+                undefinedFunctionErrors.increment();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getEvaluationErrors() {
+        return evaluationErrors.sum();
+    }
+
+    @Override
+    public long getEvaluationTimeNanos() {
+        return evaluationTimeNanos.sum();
+    }
+
+    @Override
+    public long getNotEnoughParametersErrors() {
+        return notEnoughParametersErrors.sum();
+    }
+
+    @Override
+    public long getUndefinedFunctionErrors() {
+        return undefinedFunctionErrors.sum();
+    }
+
+    /**
+     * @return statistics of every function called since the last reset, the most time-consuming first
+     */
+    @Override
+    public List<FunctionStatistics> getFunctionStatistics() {
+        final List<FunctionStatistics> statistics = new ArrayList<>(functions.size());
+        for (final Map.Entry<String, FunctionCounters> entry : functions.entrySet()) {
+            final FunctionStatistics snapshot = entry.getValue().snapshot(entry.getKey());
+            if (snapshot.getInvocations() > 0) {
+                statistics.add(snapshot);
+            }
+        }
+        Collections.sort(statistics, new Comparator<FunctionStatistics>() {
+            @Override
+            public int compare(final FunctionStatistics first, final FunctionStatistics second) {
+                return Long.compare(second.getTimeNanos(), first.getTimeNanos());
+            }
+        });
+        return statistics;
+    }
+
+    @Override
+    public List<ExpressionStatistics> getSlowestExpressions() {
+        return latencies.getSlowest(SLOWEST_EXPRESSIONS);
+    }
+
+    @Override
+    public void reset() {
+        evaluations.reset();
+        evaluationErrors.reset();
+        evaluationTimeNanos.reset();
+        notEnoughParametersErrors.reset();
+        undefinedFunctionErrors.reset();
+        for (final FunctionCounters counters : functions.values()) {
+            counters.reset();
+        }
+        latencies.reset();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under a name unique in this JVM.
+     */
+    public ObjectName registerMBean() throws JMException {
+        final ObjectName name = new ObjectName(OBJECT_NAME + REGISTERED.incrementAndGet());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * @return human readable summary, one line per function and per slowest expression fingerprint
+     */
+    public String report() {
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "metrics %s%n", enabled ? "enabled" : "disabled"));
+        final long count = getEvaluations();
+        report.append(String.format(Locale.ROOT,
+                "evaluations\t%d\terrors %d (not enough parameters %d, undefined %d)\tmean %.1f us%n", count,
+                getEvaluationErrors(), getNotEnoughParametersErrors(), getUndefinedFunctionErrors(),
+                count == 0 ? 0.0 : getEvaluationTimeNanos() / 1e3 / count));
+        for (final FunctionStatistics function : getFunctionStatistics()) {
+            report.append(String.format(Locale.ROOT, "%s\t%d calls\t%.3f ms\t%d errors%n", function.getName(),
+                    function.getInvocations(), function.getTimeNanos() / 1e6, function.getErrors()));
+        }
+        for (final ExpressionStatistics expression : getSlowestExpressions()) {
+            report.append(String.format(Locale.ROOT, "%s\t%d evaluations\tp50 %.1f us\tp99 %.1f us\tmax %.1f us%n",
+                    expression.getFingerprint(), expression.getCount(), expression.getMedianNanos() / 1e3,
+                    expression.getP99Nanos() / 1e3, expression.getMaxNanos() / 1e3));
+        }
+        return report.toString();
+    }
+}
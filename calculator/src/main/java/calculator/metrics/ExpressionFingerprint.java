@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import calculator.tokenizer.ExpressionScanner;
+
+/**
+ * Normalized form of an expression, the same for all expressions that differ only in their numbers: every number
+ * literal, with its merged sign, becomes {@code ?} and tokens are separated by single spaces, so
+ * {@code "sin(1) * -2.5"} and {@code "sin( 3 )*4"} are both {@code "sin ( ? ) * ?"}.
+ */
+public final class ExpressionFingerprint {
+    /**
+     * Longer fingerprints are cut, so that they take bounded memory.
+     */
+    public static final int MAX_LENGTH = 256;
+
+    private ExpressionFingerprint() {
+    }
+
+    public static String of(final String expression) {
+        final StringBuilder fingerprint = new StringBuilder(Math.min(expression.length(), MAX_LENGTH));
+        final ExpressionScanner scanner = new ExpressionScanner(expression);
+        while (scanner.next() && fingerprint.length() < MAX_LENGTH) {
+            if (fingerprint.length() > 0) {
+                fingerprint.append(' ');
+            }
+            if (scanner.getKind() == ExpressionScanner.Kind.Number) {
+                fingerprint.append('?');
+            } else {
+                fingerprint.append(scanner.getText());
+            }
+        }
+        if (fingerprint.length() > MAX_LENGTH) {
+            fingerprint.setLength(MAX_LENGTH);
+        }
+        return fingerprint.toString();
+    }
+}
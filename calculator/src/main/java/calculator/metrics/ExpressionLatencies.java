@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency histograms of evaluations, overall and per {@linkplain ExpressionFingerprint fingerprint}.
+ * <p>
+ * Memory stays bounded however many distinct expressions are seen: only the most recently used fingerprints keep
+ * a histogram, each of fixed size, and fingerprints of recent expressions are remembered up to a total length, so
+ * that repeated expressions are not scanned again. The fingerprints with the highest maximum latency keep their
+ * histograms apart from those, so that a rare slow expression is still reported after any number of fast ones.
+ * Slow expressions can additionally be written to a {@link SlowExpressionLog}.
+ */
+public final class ExpressionLatencies {
+    public static final int DEFAULT_MAX_FINGERPRINTS = 256;
+
+    public static final int DEFAULT_SLOWEST_FINGERPRINTS = 32;
+
+    private static final long MAX_REMEMBERED_CHARS = 1 << 20;
+
+    private volatile boolean enabled = false;
+
+    private volatile SlowExpressionLog slowLog;
+
+    private final LatencyHistogram overall = new LatencyHistogram();
+
+    private final LoadingCache<String, LatencyHistogram> histograms;
+
+    private final SlowestFingerprints slowest;
+
+    private final LoadingCache<String, String> fingerprints = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_REMEMBERED_CHARS)
+            .weigher(new Weigher<String, String>() {
+                @Override
+                public int weigh(final String expression, final String fingerprint) {
+                    return expression.length() + fingerprint.length();
+                }
+            })
+            .build(new CacheLoader<String, String>() {
+                @Override
+                public String load(final String expression) {
+                    return ExpressionFingerprint.of(expression);
+                }
+            });
+
+    public ExpressionLatencies() {
+        this(DEFAULT_MAX_FINGERPRINTS, DEFAULT_SLOWEST_FINGERPRINTS);
+    }
+
+    /**
+     * @param maxFingerprints number of recently used fingerprints with a histogram; the least recently used one
+     *      loses its histogram when another is needed, unless it is among the slowest
+     * @param slowestFingerprints number of fingerprints with the highest maximum latency that keep their histogram
+     */
+    public ExpressionLatencies(final int maxFingerprints, final int slowestFingerprints) {
+        slowest = new SlowestFingerprints(slowestFingerprints);
+        histograms = CacheBuilder.newBuilder()
+                .maximumSize(maxFingerprints)
+                .build(new CacheLoader<String, LatencyHistogram>() {
+                    @Override
+                    public LatencyHistogram load(final String fingerprint) {
+                        final LatencyHistogram kept = slowest.get(fingerprint);
+                        return kept != null ? kept : new LatencyHistogram();
+                    }
+                });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param log where evaluations slower than its threshold are written, or {@code null} to stop logging; the
+     *      previous log is not closed
+     */
+    public void setSlowLog(final SlowExpressionLog log) {
+        this.slowLog = log;
+    }
+
+    public void record(final String expression, final long nanos) {
+        overall.record(nanos);
+        final String fingerprint = fingerprints.getUnchecked(expression);
+        final LatencyHistogram histogram = histograms.getUnchecked(fingerprint);
+        histogram.record(nanos);
+        slowest.offer(fingerprint, histogram, histogram.getMax());
+        final SlowExpressionLog log = slowLog;
+        if (log != null) {
+            log.offer(fingerprint, expression, nanos);
+        }
+    }
+
+    public LatencyHistogram getOverall() {
+        return overall;
+    }
+
+    /**
+     * @return statistics of at most {@code limit} fingerprints with a histogram, the highest 99th percentile first
+     */
+    public List<ExpressionStatistics> getSlowest(final int limit) {
+        final Map<String, LatencyHistogram> all = slowest.getHistograms();
+        all.putAll(histograms.asMap());
+        final List<ExpressionStatistics> statistics = new ArrayList<>();
+        for (final Map.Entry<String, LatencyHistogram> entry : all.entrySet()) {
+            final ExpressionStatistics snapshot = ExpressionStatistics.of(entry.getKey(), entry.getValue());
+            if (snapshot.getCount() > 0) {
+                statistics.add(snapshot);
+            }
+        }
+        Collections.sort(statistics, new Comparator<ExpressionStatistics>() {
+            @Override
+            public int compare(final ExpressionStatistics first, final ExpressionStatistics second) {
+                final int byP99 = Long.compare(second.getP99Nanos(), first.getP99Nanos());
+                return byP99 != 0 ? byP99 : Long.compare(second.getMaxNanos(), first.getMaxNanos());
+            }
+        });
+        return statistics.size() > limit ? new ArrayList<>(statistics.subList(0, limit)) : statistics;
+    }
+
+    public void reset() {
+        overall.reset();
+        histograms.invalidateAll();
+        slowest.clear();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import java.util.List;
+
+/**
+ * Counts and times the evaluations of a compiled expression while metrics are enabled.
+ */
+final class InstrumentedExpression implements CompiledExpression {
+    private final CompiledExpression expression;
+
+    private final EvaluationMetrics metrics;
+
+    InstrumentedExpression(final CompiledExpression expression, final EvaluationMetrics metrics) {
+        this.expression = expression;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getNumberOfParams() {
+        return expression.getNumberOfParams();
+    }
+
+    @Override
+    public double evaluate() throws ExpressionExecuteException {
+        if (!metrics.isEnabled()) {
+            return expression.evaluate();
+        }
+        final long start = System.nanoTime();
+        try {
+            final double result = expression.evaluate();
+            metrics.recordEvaluation(System.nanoTime() - start);
+            return result;
+        } catch (ExpressionExecuteException ex) {
+            metrics.recordFailedEvaluation(System.nanoTime() - start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public double evaluate(final double[] params) throws ExpressionExecuteException {
+        if (!metrics.isEnabled()) {
+            return expression.evaluate(params);
+        }
+        final long start = System.nanoTime();
+        try {
+            final double result = expression.evaluate(params);
+            metrics.recordEvaluation(System.nanoTime() - start);
+            return result;
+        } catch (ExpressionExecuteException ex) {
+            metrics.recordFailedEvaluation(System.nanoTime() - start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results) throws ExpressionExecuteException {
+        evaluate(params, results, 0, results.length);
+    }
+
+    @Override
+    public void evaluate(final double[][] params, final double[] results, final int from, final int to)
+            throws ExpressionExecuteException {
+        if (!metrics.isEnabled()) {
+            expression.evaluate(params, results, from, to);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            expression.evaluate(params, results, from, to);
+            metrics.recordEvaluation(System.nanoTime() - start);
+        } catch (ExpressionExecuteException ex) {
+            metrics.recordFailedEvaluation(System.nanoTime() - start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void execute(final DoubleStack stack) throws ExpressionExecuteException {
+        expression.execute(stack);
+    }
+
+    @Override
+    public List<String> getDependencyNames() {
+        return expression.getDependencyNames();
+    }
+
+    @Override
+    public int getTokenCount() {
+        return expression.getTokenCount();
+    }
+
+    @Override
+    public boolean isStale() {
+        return expression.isStale();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+
+/**
+ * Counts and times the calls of a function while metrics are enabled. The wrapper hides whether the function is
+ * pure or has column kernels, so programs using it are neither folded nor vectorized; the calls measured are the
+ * calls made.
+ */
+final class InstrumentedFunction implements Function {
+    private final Function function;
+
+    private final EvaluationMetrics metrics;
+
+    private final FunctionCounters counters;
+
+    InstrumentedFunction(final Function function, final EvaluationMetrics metrics, final FunctionCounters counters) {
+        this.function = function;
+        this.metrics = metrics;
+        this.counters = counters;
+    }
+
+    @Override
+    public int getPriority() {
+        return function.getPriority();
+    }
+
+    @Override
+    public Associativity getAssociativity() {
+        return function.getAssociativity();
+    }
+
+    @Override
+    public int getNumberOfParams() {
+        return function.getNumberOfParams();
+    }
+
+    @Override
+    public void apply(final DoubleStack stack) throws ExpressionExecuteException {
+        if (!metrics.isEnabled()) {
+            function.apply(stack);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            function.apply(stack);
+        } catch (ExpressionExecuteException ex) {
+            counters.errors.increment();
+            throw ex;
+        } finally {
+            counters.timeNanos.add(System.nanoTime() - start);
+            counters.invocations.increment();
+        }
+    }
+}
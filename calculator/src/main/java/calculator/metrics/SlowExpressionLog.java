@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log of evaluations slower than a threshold, one tab separated line each: time, milliseconds, fingerprint and the
+ * expression itself. Lines are written by a daemon thread of the log; evaluating threads only put them in a
+ * bounded queue, and when it is full they are dropped and counted rather than waited for.
+ */
+public final class SlowExpressionLog implements Closeable {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Entry END = new Entry(0, 0, "", "");
+
+    private final Writer writer;
+
+    private final long thresholdNanos;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread thread;
+
+    private volatile IOException failure;
+
+    public SlowExpressionLog(final Writer writer, final long threshold, final TimeUnit unit) {
+        this(writer, threshold, unit, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of lines waiting to be written
+     */
+    public SlowExpressionLog(final Writer writer, final long threshold, final TimeUnit unit, final int capacity) {
+        this.writer = writer;
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "slow-expression-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the evaluation for writing if it took at least the threshold.
+     */
+    public void offer(final String fingerprint, final String expression, final long nanos) {
+        if (nanos >= thresholdNanos &&
+                !queue.offer(new Entry(System.currentTimeMillis(), nanos, fingerprint, expression))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of slow evaluations not logged because too many were waiting
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the lines still waiting, then closes the writer.
+     *
+     * @throws IOException if any line could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                Entry entry = queue.take();
+                while (entry != null) {
+                    if (entry == END) {
+                        writer.flush();
+                        return;
+                    }
+                    writer.write(entry.format());
+                    entry = queue.poll();
+                }
+                writer.flush();
+            }
+        } catch (IOException ex) {
+            failure = ex;
+            drain();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keeps taking entries after a failure, so that {@link #close()} does not block.
+     */
+    private void drain() {
+        try {
+            while (queue.take() != END) {
+                dropped.incrementAndGet();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Entry {
+        private final long time;
+
+        private final long nanos;
+
+        private final String fingerprint;
+
+        private final String expression;
+
+        Entry(final long time, final long nanos, final String fingerprint, final String expression) {
+            this.time = time;
+            this.nanos = nanos;
+            this.fingerprint = fingerprint;
+            this.expression = expression;
+        }
+
+        String format() {
+            final String text = expression.length() > ExpressionFingerprint.MAX_LENGTH ?
+                    expression.substring(0, ExpressionFingerprint.MAX_LENGTH) : expression;
+            return String.format(Locale.ROOT, "%s\t%.3f ms\t%s\t%s%n", Instant.ofEpochMilli(time), nanos / 1e6,
+                    fingerprint, text);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The fingerprints with the highest maximum latency, kept with their histograms however many other fingerprints
+ * are seen afterwards. A bounded min-heap on the maximum: a fingerprint enters once it is slower than the fastest
+ * one kept, which it then replaces.
+ */
+final class SlowestFingerprints {
+    private final int capacity;
+
+    private final PriorityQueue<Entry> heap;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Maximum a fingerprint must exceed to enter, -1 while there is room; read without locking, so that the usual
+     * evaluation, faster than all kept, does not contend.
+     */
+    private volatile long threshold = -1;
+
+    SlowestFingerprints(final int capacity) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity);
+    }
+
+    /**
+     * @param max the maximum latency of the histogram, after the evaluation just recorded into it
+     */
+    void offer(final String fingerprint, final LatencyHistogram histogram, final long max) {
+        if (max <= threshold) {
+            return;
+        }
+        synchronized (this) {
+            final Entry existing = entries.get(fingerprint);
+            if (existing != null) {
+                heap.remove(existing);
+                existing.max = Math.max(existing.max, max);
+                heap.add(existing);
+            } else if (entries.size() < capacity || max > heap.peek().max) {
+                if (entries.size() == capacity) {
+                    entries.remove(heap.poll().fingerprint);
+                }
+                final Entry entry = new Entry(fingerprint, histogram, max);
+                entries.put(fingerprint, entry);
+                heap.add(entry);
+            }
+            threshold = entries.size() < capacity ? -1 : heap.peek().max;
+        }
+    }
+
+    /**
+     * @return the histogram kept for the fingerprint, or {@code null}
+     */
+    synchronized LatencyHistogram get(final String fingerprint) {
+        final Entry entry = entries.get(fingerprint);
+        return entry != null ? entry.histogram : null;
+    }
+
+    synchronized Map<String, LatencyHistogram> getHistograms() {
+        final Map<String, LatencyHistogram> histograms = new HashMap<>();
+        for (final Entry entry : entries.values()) {
+            histograms.put(entry.fingerprint, entry.histogram);
+        }
+        return histograms;
+    }
+
+    synchronized void clear() {
+        heap.clear();
+        entries.clear();
+        threshold = -1;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String fingerprint;
+
+        private final LatencyHistogram histogram;
+
+        private long max;
+
+        Entry(final String fingerprint, final LatencyHistogram histogram, final long max) {
+            this.fingerprint = fingerprint;
+            this.histogram = histogram;
+            this.max = max;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            return Long.compare(max, other.max);
+        }
+    }
+}
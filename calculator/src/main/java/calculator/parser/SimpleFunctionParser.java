@@ -23,30 +23,55 @@
  */
 package calculator.parser;
 
+import calculator.evaluator.CompiledExpression;
 import calculator.evaluator.Evaluator;
+import calculator.evaluator.rpn.token.TokenFactory;
 import calculator.exception.execute.ExpressionExecuteException;
-import calculator.exception.execute.NotEnoughParametersException;
 import calculator.exception.parse.FunctionParseException;
+import calculator.function.DoubleStack;
+import calculator.function.Function;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.custom.CompiledFunctionExecutor;
 import calculator.function.rpn.custom.FunctionExecutor;
-import java.util.EmptyStackException;
-import java.util.Stack;
+import calculator.jfr.CustomFunctionEvent;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class SimpleFunctionParser implements FunctionParser {
     private Evaluator evaluator;
 
-    private static final Pattern paramPattern = Pattern.compile("\\{(\\d)\\}");
+    /**
+     * Bodies compiled in an earlier generation are compiled again on their next call, see {@link #invalidateAll()}.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
 
     public SimpleFunctionParser(final Evaluator evaluator) {
         this.evaluator = evaluator;
     }
 
-    class SimpleFunctionExecutor implements FunctionExecutor {
+    /**
+     * Makes every function body parsed here compile again on its next call, for changes the compiled programs do not
+     * track themselves, such as metrics being switched on or off.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Executes the function body compiled once into a program reading its arguments directly from the caller's
+     * stack. The body is compiled lazily on first call, so functions may still refer to definitions made after them.
+     * Called during an evaluation, it is resolved in the definitions the evaluation started with and recompiled
+     * only when those are a different version; otherwise only when a user defined symbol it refers to changes. It is
+     * recompiled in any case after {@link SimpleFunctionParser#invalidateAll()}.
+     */
+    class SimpleFunctionExecutor implements CompiledFunctionExecutor {
         private final int numberOfParams;
 
         private final String functionBody;
 
+        private volatile Binding binding;
+
         public SimpleFunctionExecutor(int numberOfParams, String expression) {
             this.numberOfParams = numberOfParams;
             this.functionBody = expression;
@@ -57,32 +82,54 @@ public class SimpleFunctionParser implements FunctionParser {
         }
 
         @Override
-        public void execute(final Stack<Double> stack) throws ExpressionExecuteException {
-            final double[] parameters = prepareParameters(stack);
-            final String processedExpression = processExpression(functionBody, parameters);
-            stack.push(evaluator.evaluate(processedExpression));
-        }
-
-        private double[] prepareParameters(final Stack<Double> stack) throws NotEnoughParametersException {
+        public void execute(final DoubleStack stack) throws ExpressionExecuteException {
+            final CustomFunctionEvent event = new CustomFunctionEvent();
+            event.begin();
             try {
-                final double[] parameters = new double[numberOfParams];
-
-                int paramsCounter = numberOfParams;
-                while (paramsCounter-- > 0) {
-                    parameters[paramsCounter] = stack.pop();
-                }
-                return parameters;
-            } catch (EmptyStackException e) {
-                throw new NotEnoughParametersException(functionBody, e);
+                getProgram(stack.getDefinitions()).execute(stack);
+            } finally {
+                event.record(functionBody, numberOfParams);
             }
         }
 
-        private String processExpression(final String functionBody, final double[] parameters) {
-            String processed = functionBody;
-            for (int i = 0; i < parameters.length; ++i) {
-                processed = processed.replaceAll("\\{" + i + "\\}", String.valueOf(parameters[i]));
+        @Override
+        public CompiledExpression getProgram() throws ExpressionExecuteException {
+            return getProgram(null);
+        }
+
+        /**
+         * @param definitions snapshot of the running evaluation, or {@code null} to use the current definitions
+         */
+        private CompiledExpression getProgram(final FunctionRepository definitions)
+                throws ExpressionExecuteException {
+            final Map<String, Function> version = definitions != null ? definitions.getFunctions() : null;
+            final int expected = generation.get();
+            Binding current = binding;
+            if (current == null || current.generation != expected ||
+                    (version != null ? current.version != version : current.program.isStale())) {
+                current = new Binding(version != null ? evaluator.compile(functionBody, definitions) :
+                        evaluator.compile(functionBody), version, expected);
+                binding = current;
             }
-            return processed;
+            return current.program;
+        }
+    }
+
+    /**
+     * Compiled body together with the version of the definitions it was resolved in, {@code null} if it was
+     * compiled against the current ones, and the generation of the parser it was compiled in.
+     */
+    private static final class Binding {
+        private final CompiledExpression program;
+
+        private final Map<String, Function> version;
+
+        private final int generation;
+
+        Binding(final CompiledExpression program, final Map<String, Function> version, final int generation) {
+            this.program = program;
+            this.version = version;
+            this.generation = generation;
         }
     }
 
@@ -99,7 +146,7 @@ public class SimpleFunctionParser implements FunctionParser {
 
     private int countParameters(final String functionBody) {
         int maxParam = -1;
-        final Matcher matcher = paramPattern.matcher(functionBody);
+        final Matcher matcher = TokenFactory.PARAMETER_PATTERN.matcher(functionBody);
         while (matcher.find()) {
             final int paramNumber;
             paramNumber = Integer.valueOf(matcher.group(1));
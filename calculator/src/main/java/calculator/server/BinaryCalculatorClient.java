@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import calculator.exception.execute.ExpressionExecuteException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking client of the {@link BinaryProtocol}. Requests are buffered by {@link #send(String)} and go out on
+ * {@link #flush()} or when a response is awaited, so many of them can be pipelined. The server stops reading from a
+ * connection while its responses are not read, so a client should not send more than a few thousand requests
+ * before receiving.
+ */
+public final class BinaryCalculatorClient implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public BinaryCalculatorClient(final InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        input.flip();
+    }
+
+    /**
+     * Evaluates one expression, waiting for the result.
+     */
+    public double evaluate(final String expression) throws IOException, ExpressionExecuteException {
+        send(expression);
+        final Response response = receive();
+        if (response.isError()) {
+            throw new ExpressionExecuteException(response.getError(), null);
+        }
+        return response.getValue();
+    }
+
+    public void send(final String expression) throws IOException {
+        final byte[] bytes = expression.getBytes(StandardCharsets.UTF_8);
+        if (1 + bytes.length > BinaryProtocol.MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Expression too long: " + bytes.length + " bytes");
+        }
+        if (output.remaining() < BinaryProtocol.LENGTH_SIZE + 1 + bytes.length) {
+            flush();
+        }
+        output.putInt(1 + bytes.length).put(BinaryProtocol.EVALUATE);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!output.hasRemaining()) {
+                flush();
+            }
+            final int count = Math.min(output.remaining(), bytes.length - offset);
+            output.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    public void flush() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+
+    /**
+     * Waits for the response to the oldest request without one, sending buffered requests first.
+     */
+    public Response receive() throws IOException {
+        if (output.position() > 0) {
+            flush();
+        }
+        fill(BinaryProtocol.LENGTH_SIZE);
+        final int length = input.getInt(input.position());
+        if (length < 1 || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        fill(BinaryProtocol.LENGTH_SIZE + length);
+        input.getInt();
+        final byte type = input.get();
+        if (type == BinaryProtocol.VALUE) {
+            return new Response(input.getDouble(), null);
+        }
+        final String error = new String(input.array(), input.arrayOffset() + input.position(), length - 1,
+                StandardCharsets.UTF_8);
+        input.position(input.position() + length - 1);
+        if (type != BinaryProtocol.ERROR) {
+            throw new IOException("Unknown response type " + type);
+        }
+        return new Response(Double.NaN, error);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void fill(final int bytes) throws IOException {
+        if (input.remaining() >= bytes) {
+            return;
+        }
+        if (bytes > input.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocate(bytes);
+            larger.put(input);
+            larger.flip();
+            input = larger;
+        }
+        input.compact();
+        while (input.position() < bytes) {
+            if (channel.read(input) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+        input.flip();
+    }
+
+    public static final class Response {
+        private final double value;
+
+        private final String error;
+
+        Response(final double value, final String error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        public boolean isError() {
+            return error != null;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import calculator.Calculator;
+import calculator.batch.BatchEvaluator;
+import calculator.evaluator.CompiledExpression;
+import calculator.exception.execute.ExpressionExecuteException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the {@link BinaryProtocol} from one selector thread. All requests that have arrived on a connection are
+ * evaluated as one batch and their responses leave in one gathering write. Expressions are looked up by their bytes
+ * in a cache of compiled expressions, so repeated ones are evaluated without decoding them.
+ */
+public final class BinaryCalculatorServer implements Runnable, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+
+    private final Calculator calculator;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel serverChannel;
+
+    private final Map<ExpressionKey, CompiledExpression> expressions =
+            new LinkedHashMap<ExpressionKey, CompiledExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<ExpressionKey, CompiledExpression> eldest) {
+                    return size() > MAX_CACHED_EXPRESSIONS;
+                }
+            };
+
+    private final ExpressionKey probe = new ExpressionKey();
+
+    private volatile boolean running = true;
+
+    private Thread thread;
+
+    public BinaryCalculatorServer(final InetSocketAddress address, final Calculator calculator) throws IOException {
+        this.calculator = calculator;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    public void start() {
+        thread = new Thread(this, "binary-calculator-server");
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            ((Connection) key.attachment()).handle(key);
+                        }
+                    } catch (IOException ex) {
+                        key.cancel();
+                        key.channel().close();
+                    } catch (RuntimeException ex) {
+                        // a failure serving one connection must not stop the others
+                        if (key.channel() != serverChannel) {
+                            closeConnection(key);
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Selector failed", ex);
+        } finally {
+            for (final SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ex) {
+                    // closing anyway
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                // closing anyway
+            }
+        }
+    }
+
+    private static void closeConnection(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+            // closing anyway
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * @return the compiled expression, or an invalid one that reports the error when evaluated
+     */
+    private CompiledExpression getCompiled(final byte[] array, final int offset, final int length) {
+        probe.set(array, offset, length);
+        CompiledExpression compiled = expressions.get(probe);
+        if (compiled == null || compiled.isStale()) {
+            final String expression = new String(array, offset, length, StandardCharsets.UTF_8);
+            compiled = calculator.tryCompile(expression);
+            expressions.put(new ExpressionKey(Arrays.copyOfRange(array, offset, offset + length)), compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Bytes of an expression. The server's probe key is pointed at each request in the input buffer in turn.
+     */
+    private static final class ExpressionKey {
+        private byte[] array;
+
+        private int offset;
+
+        private int length;
+
+        private int hash;
+
+        ExpressionKey() {
+        }
+
+        ExpressionKey(final byte[] bytes) {
+            set(bytes, 0, bytes.length);
+        }
+
+        void set(final byte[] array, final int offset, final int length) {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+            int h = 1;
+            for (int i = offset; i < offset + length; ++i) {
+                h = 31 * h + array[i];
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof ExpressionKey)) {
+                return false;
+            }
+            final ExpressionKey other = (ExpressionKey) obj;
+            if (hash != other.hash || length != other.length) {
+                return false;
+            }
+            for (int i = 0; i < length; ++i) {
+                if (array[offset + i] != other.array[other.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+
+        private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private final List<ByteBuffer> segments = new ArrayList<>();
+
+        private ByteBuffer[] pending;
+
+        Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void handle(final SelectionKey key) throws IOException {
+            if (key.isWritable() && !writePending()) {
+                return;
+            }
+            if (key.isReadable()) {
+                if (channel.read(input) < 0) {
+                    key.cancel();
+                    channel.close();
+                    return;
+                }
+            }
+            input.flip();
+            while (processBatch()) {
+                if (!writeBatch()) {
+                    break;
+                }
+            }
+            input.compact();
+            key.interestOps(pending == null ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * @return whether the pending responses are all written now
+         */
+        private boolean writePending() throws IOException {
+            if (pending != null) {
+                channel.write(pending);
+                if (pending[pending.length - 1].hasRemaining()) {
+                    return false;
+                }
+                pending = null;
+            }
+            return true;
+        }
+
+        /**
+         * Evaluates complete requests from the input until they run out or the output is full.
+         *
+         * @return whether there are responses to write
+         */
+        private boolean processBatch() throws IOException {
+            output.clear();
+            segments.clear();
+            int segmentStart = 0;
+            while (input.remaining() >= BinaryProtocol.LENGTH_SIZE &&
+                    output.remaining() >= BinaryProtocol.VALUE_FRAME_SIZE) {
+                final int position = input.position();
+                final int length = input.getInt(position);
+                if (length < 1 || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (input.remaining() < BinaryProtocol.LENGTH_SIZE + length) {
+                    if (BinaryProtocol.LENGTH_SIZE + length > input.capacity()) {
+                        final ByteBuffer larger = ByteBuffer.allocate(BinaryProtocol.LENGTH_SIZE + length);
+                        larger.put(input);
+                        larger.flip();
+                        input = larger;
+                    }
+                    break;
+                }
+                input.position(position + BinaryProtocol.LENGTH_SIZE + length);
+
+                final byte[] message = evaluate(input.array(), input.arrayOffset() + position, length);
+                if (message == null) {
+                    continue;
+                }
+                output.putInt(1 + message.length).put(BinaryProtocol.ERROR);
+                segments.add(segment(segmentStart, output.position()));
+                segments.add(ByteBuffer.wrap(message));
+                segmentStart = output.position();
+            }
+            if (output.position() > segmentStart) {
+                segments.add(segment(segmentStart, output.position()));
+            }
+            return !segments.isEmpty();
+        }
+
+        /**
+         * Evaluates one request frame and puts a value response into the output.
+         *
+         * @return the error message if there is no value
+         */
+        private byte[] evaluate(final byte[] array, final int frameStart, final int length) {
+            final int offset = frameStart + BinaryProtocol.LENGTH_SIZE;
+            if (array[offset] != BinaryProtocol.EVALUATE) {
+                return ("Unknown request type " + array[offset]).getBytes(StandardCharsets.UTF_8);
+            }
+            try {
+                final double value = getCompiled(array, offset + 1, length - 1).evaluate();
+                output.putInt(1 + 8).put(BinaryProtocol.VALUE).putDouble(value);
+                return null;
+            } catch (ExpressionExecuteException ex) {
+                return BatchEvaluator.describe(ex).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        private ByteBuffer segment(final int from, final int to) {
+            final ByteBuffer segment = output.duplicate();
+            segment.limit(to).position(from);
+            return segment;
+        }
+
+        /**
+         * @return whether everything was written, so that the output can be reused
+         */
+        private boolean writeBatch() throws IOException {
+            final ByteBuffer[] buffers = segments.toArray(new ByteBuffer[segments.size()]);
+            channel.write(buffers);
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                pending = buffers;
+                return false;
+            }
+            return true;
+        }
+    }
+}
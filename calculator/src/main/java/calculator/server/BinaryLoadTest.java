@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the throughput of a binary evaluation service: every connection pipelines windows of requests, sending a
+ * whole window before reading its responses.
+ */
+public final class BinaryLoadTest {
+    private final InetSocketAddress address;
+
+    private final int connections;
+
+    private final int requestsPerConnection;
+
+    private final int window;
+
+    public BinaryLoadTest(final InetSocketAddress address, final int connections, final int requestsPerConnection,
+            final int window) {
+        this.address = address;
+        this.connections = connections;
+        this.requestsPerConnection = requestsPerConnection;
+        this.window = window;
+    }
+
+    public Result run(final String expression) throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            final long start = System.nanoTime();
+            final List<Future<Long>> results = new ArrayList<>(connections);
+            for (int i = 0; i < connections; ++i) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return runConnection(expression);
+                    }
+                }));
+            }
+            long errors = 0;
+            for (final Future<Long> result : results) {
+                errors += result.get();
+            }
+            return new Result((long) connections * requestsPerConnection, errors, System.nanoTime() - start);
+        } catch (ExecutionException ex) {
+            throw new IOException("Load test connection failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of error responses
+     */
+    private long runConnection(final String expression) throws IOException {
+        long errors = 0;
+        try (BinaryCalculatorClient client = new BinaryCalculatorClient(address)) {
+            for (int sent = 0; sent < requestsPerConnection; sent += window) {
+                final int count = Math.min(window, requestsPerConnection - sent);
+                for (int i = 0; i < count; ++i) {
+                    client.send(expression);
+                }
+                for (int i = 0; i < count; ++i) {
+                    if (client.receive().isError()) {
+                        ++errors;
+                    }
+                }
+            }
+        }
+        return errors;
+    }
+
+    public static final class Result {
+        private final long requests;
+
+        private final long errors;
+
+        private final long elapsedNanos;
+
+        Result(final long requests, final long errors, final long elapsedNanos) {
+            this.requests = requests;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getRequestsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : requests * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d requests, %d errors in %.3f s: %.0f requests/s",
+                    requests, errors, elapsedNanos / 1e9, getRequestsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+/**
+ * Frames of the binary evaluation protocol. Every frame starts with its length as a big-endian int, not counting
+ * those four bytes, followed by a one-byte type:
+ * <ul>
+ * <li>{@link #EVALUATE} request: the expression in UTF-8,</li>
+ * <li>{@link #VALUE} response: the result as a big-endian IEEE 754 double,</li>
+ * <li>{@link #ERROR} response: the error message in UTF-8.</li>
+ * </ul>
+ * A client may send any number of requests before reading; responses come back in request order.
+ */
+public final class BinaryProtocol {
+    public static final byte EVALUATE = 1;
+
+    public static final byte VALUE = 0;
+
+    public static final byte ERROR = 2;
+
+    public static final int LENGTH_SIZE = 4;
+
+    public static final int VALUE_FRAME_SIZE = LENGTH_SIZE + 1 + 8;
+
+    /**
+     * Longest frame accepted, without the length; a connection sending a longer one is closed.
+     */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    private BinaryProtocol() {
+    }
+}
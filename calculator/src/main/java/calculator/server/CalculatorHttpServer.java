@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import calculator.Calculator;
+import calculator.batch.BatchEvaluator;
+import calculator.command.Command;
+import calculator.command.CommandResult;
+import calculator.command.EmptyResult;
+import calculator.exception.command.CommandParseException;
+import calculator.exception.command.UnknownCommandException;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.parse.FunctionParseException;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves evaluations over HTTP. {@code POST /evaluate} takes expressions and {@code :} commands, either as text, one
+ * per line, or as a JSON string or array of strings when the content type is {@code application/json}. It answers
+ * in the same format: in text one line per expression and per command that prints something, as in batch mode, and
+ * in JSON an array holding a {@code value}, an {@code output} or an {@code error} object per input line.
+ * <p>
+ * Requests without a {@value #SESSION_HEADER} header share one calculator, which they can only read: commands
+ * that change it are rejected. Each session has its own, so functions and constants defined in a session are only
+ * visible there, and its expressions update its {@code ans} and the result {@code :s} saves. Sessions expire after
+ * {@value #SESSION_TIMEOUT_MINUTES} minutes of inactivity.
+ * <p>
+ * Every request runs on a task of the given executor. Expressions go through the thread-safe
+ * {@link Calculator#calculate(String)}, so requests never wait for each other unless they define something.
+ */
+public final class CalculatorHttpServer {
+    public static final String EVALUATE_PATH = "/evaluate";
+
+    public static final String SESSION_HEADER = "X-Calculator-Session";
+
+    public static final long SESSION_TIMEOUT_MINUTES = 30;
+
+    static final String JSON_CONTENT_TYPE = "application/json";
+
+    static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+
+    private static final int MAX_SESSIONS = 10000;
+
+    private static final int SESSION_CACHE_SIZE = 100;
+
+    private static final int MAX_REQUEST_SIZE = 16 << 20;
+
+    /**
+     * System property disabling Nagle's algorithm in the JDK's HTTP server, for the whole JVM. It should be
+     * {@code true}: response headers and body are written separately, so otherwise the body waits for the client's
+     * delayed acknowledgement of the headers, about 40 ms per request. It is read when the first server is created,
+     * so it has to be set on the command line or before that.
+     */
+    public static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final Calculator sharedCalculator = new Calculator();
+
+    private final LoadingCache<String, Calculator> sessions = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SESSIONS)
+            .expireAfterAccess(SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+            .build(new CacheLoader<String, Calculator>() {
+                @Override
+                public Calculator load(final String session) {
+                    return new Calculator(SESSION_CACHE_SIZE);
+                }
+            });
+
+    /**
+     * Creates a server running every request on its own thread from a cached pool.
+     */
+    public CalculatorHttpServer(final InetSocketAddress address) throws IOException {
+        this(address, Executors.newCachedThreadPool());
+    }
+
+    /**
+     * @param executor runs the requests and is shut down by {@link #stop(int)}
+     */
+    public CalculatorHttpServer(final InetSocketAddress address, final ExecutorService executor) throws IOException {
+        this.executor = executor;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(EVALUATE_PATH, new EvaluateHandler());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @param delaySeconds how long to wait for requests in progress
+     */
+    public void stop(final int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public long getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the calculator of the request's session, {@code null} if it has none
+     */
+    private Calculator getSessionCalculator(final HttpExchange exchange) {
+        final String session = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+        return session == null ? null : sessions.getUnchecked(session);
+    }
+
+    /**
+     * Evaluates a line of a session, or of the shared calculator if {@code session} is {@code false}.
+     */
+    private static Result evaluate(final Calculator calculator, final boolean session, final String line) {
+        try {
+            if (BatchEvaluator.isCommand(line)) {
+                final Command command = new Command.Builder().parse(line).build();
+                if (!session && !isReadOnly(command)) {
+                    return Result.error("Commands changing definitions need a " + SESSION_HEADER + " header");
+                }
+                final CommandResult result;
+                synchronized (calculator) {
+                    result = calculator.executeCommand(command);
+                }
+                return result instanceof EmptyResult ? Result.NONE : Result.output(result.getStringRepresentation());
+            }
+            if (!session) {
+                return Result.value(calculator.calculate(line));
+            }
+            try {
+                final double value = calculator.calculate(line);
+                synchronized (calculator) {
+                    calculator.recordResult(value);
+                }
+                return Result.value(value);
+            } catch (ExpressionExecuteException ex) {
+                synchronized (calculator) {
+                    calculator.recordFailure();
+                }
+                throw ex;
+            }
+        } catch (ExpressionExecuteException | FunctionParseException | UnknownCommandException |
+                CommandParseException ex) {
+            return Result.error(BatchEvaluator.describe(ex));
+        }
+    }
+
+    private static boolean isReadOnly(final Command command) {
+        switch (command.getType()) {
+            case Print:
+            case PrintBuiltin:
+                return true;
+            case Stats:
+                return command.getParam() == null;
+            default:
+                return false;
+        }
+    }
+
+    private static final class Result {
+        static final Result NONE = new Result(0.0, null, null);
+
+        private final double value;
+
+        private final String output;
+
+        private final String error;
+
+        private Result(final double value, final String output, final String error) {
+            this.value = value;
+            this.output = output;
+            this.error = error;
+        }
+
+        static Result value(final double value) {
+            return new Result(value, null, null);
+        }
+
+        static Result output(final String output) {
+            return new Result(0.0, output, null);
+        }
+
+        static Result error(final String error) {
+            return new Result(0.0, null, error);
+        }
+
+        void appendText(final StringBuilder text) {
+            if (error != null) {
+                text.append("error: ").append(error).append('\n');
+            } else if (output != null) {
+                text.append(output).append('\n');
+            } else if (this != NONE) {
+                text.append(value).append('\n');
+            }
+        }
+
+        void appendJson(final StringBuilder json) {
+            if (error != null) {
+                json.append("{\"error\":");
+                Json.appendString(json, error);
+            } else if (output != null) {
+                json.append("{\"output\":");
+                Json.appendString(json, output);
+            } else if (this == NONE) {
+                json.append("{\"output\":null");
+            } else {
+                json.append("{\"value\":");
+                Json.appendNumber(json, value);
+            }
+            json.append('}');
+        }
+    }
+
+    private final class EvaluateHandler implements HttpHandler {
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    send(exchange, 405, TEXT_CONTENT_TYPE, "Only POST is supported\n");
+                    return;
+                }
+                final String body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    send(exchange, 413, TEXT_CONTENT_TYPE, "Request too large\n");
+                    return;
+                }
+                final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                final boolean json = contentType != null && contentType.startsWith(JSON_CONTENT_TYPE);
+                final List<String> lines;
+                if (json) {
+                    try {
+                        lines = Json.parseStrings(body);
+                    } catch (IllegalArgumentException ex) {
+                        send(exchange, 400, TEXT_CONTENT_TYPE, ex.getMessage() + "\n");
+                        return;
+                    }
+                } else {
+                    lines = splitLines(body);
+                }
+
+                final Calculator sessionCalculator = getSessionCalculator(exchange);
+                final Calculator calculator = sessionCalculator != null ? sessionCalculator : sharedCalculator;
+                final StringBuilder response = new StringBuilder();
+                if (json) {
+                    response.append('[');
+                }
+                for (final String line : lines) {
+                    final Result result = evaluate(calculator, sessionCalculator != null, line);
+                    if (json) {
+                        if (response.length() > 1) {
+                            response.append(',');
+                        }
+                        result.appendJson(response);
+                    } else {
+                        result.appendText(response);
+                    }
+                }
+                if (json) {
+                    response.append(']');
+                }
+                send(exchange, 200, json ? JSON_CONTENT_TYPE : TEXT_CONTENT_TYPE, response.toString());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private List<String> splitLines(final String body) {
+            final List<String> lines = new ArrayList<>();
+            for (final String line : body.split("\r?\n")) {
+                if (!BatchEvaluator.isBlank(line)) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * @return the body, or {@code null} if it is larger than allowed
+         */
+        private String readBody(final InputStream input) throws IOException {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_REQUEST_SIZE) {
+                    return null;
+                }
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private void send(final HttpExchange exchange, final int status, final String contentType,
+                final String body) throws IOException {
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        }
+    }
+}
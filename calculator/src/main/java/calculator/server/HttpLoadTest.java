@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sends the same request to an evaluation service from several threads and measures how long each takes.
+ */
+public final class HttpLoadTest {
+    private final URL url;
+
+    private final int threads;
+
+    private final int requestsPerThread;
+
+    public HttpLoadTest(final URL url, final int threads, final int requestsPerThread) {
+        this.url = url;
+        this.threads = threads;
+        this.requestsPerThread = requestsPerThread;
+    }
+
+    public LatencyReport run(final String contentType, final String body) throws IOException, InterruptedException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final long start = System.nanoTime();
+            final List<Future<long[]>> results = new ArrayList<>(threads);
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        final long[] latencies = new long[requestsPerThread];
+                        for (int j = 0; j < requestsPerThread; ++j) {
+                            final long requestStart = System.nanoTime();
+                            latencies[j] = send(contentType, bytes) ? System.nanoTime() - requestStart : -1;
+                        }
+                        return latencies;
+                    }
+                }));
+            }
+
+            final long[] latencies = new long[threads * requestsPerThread];
+            int count = 0;
+            long failures = 0;
+            for (final Future<long[]> result : results) {
+                for (final long latency : result.get()) {
+                    if (latency < 0) {
+                        ++failures;
+                    } else {
+                        latencies[count++] = latency;
+                    }
+                }
+            }
+            final long[] successful = new long[count];
+            System.arraycopy(latencies, 0, successful, 0, count);
+            return new LatencyReport(successful, failures, System.nanoTime() - start);
+        } catch (ExecutionException ex) {
+            throw new IOException("Load test request failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return whether the service answered with 200
+     */
+    private boolean send(final String contentType, final byte[] body) {
+        try {
+            return post(contentType, body);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private boolean post(final String contentType, final byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body);
+        }
+        final int status = connection.getResponseCode();
+        // reading the whole response lets the connection be reused
+        try (InputStream input = status == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (input != null) {
+                final byte[] buffer = new byte[8192];
+                while (input.read(buffer) >= 0) {
+                    // discarded
+                }
+            }
+        }
+        return status == 200;
+    }
+}
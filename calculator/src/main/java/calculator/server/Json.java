@@ -0,0 +1,203 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The little JSON the service speaks: requests are a string or an array of strings, responses are built from
+ * strings and numbers.
+ */
+final class Json {
+    private Json() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is neither a JSON string nor an array of strings
+     */
+    static List<String> parseStrings(final String text) {
+        final Parser parser = new Parser(text);
+        final List<String> strings = new ArrayList<>();
+        parser.skipWhitespace();
+        if (parser.peek() == '[') {
+            parser.expect('[');
+            parser.skipWhitespace();
+            if (parser.peek() == ']') {
+                parser.expect(']');
+            } else {
+                do {
+                    parser.skipWhitespace();
+                    strings.add(parser.parseString());
+                    parser.skipWhitespace();
+                } while (parser.tryConsume(','));
+                parser.expect(']');
+            }
+        } else {
+            strings.add(parser.parseString());
+        }
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected content at " + parser.position);
+        }
+        return strings;
+    }
+
+    static void appendString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Appends a number; JSON has no NaN or infinities, so those become strings.
+     */
+    static void appendNumber(final StringBuilder json, final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            appendString(json, String.valueOf(value));
+        } else {
+            json.append(value);
+        }
+    }
+
+    private static final class Parser {
+        private final String text;
+
+        private int position = 0;
+
+        Parser(final String text) {
+            this.text = text;
+        }
+
+        boolean atEnd() {
+            return position == text.length();
+        }
+
+        char peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && (text.charAt(position) == ' ' || text.charAt(position) == '\t' ||
+                    text.charAt(position) == '\n' || text.charAt(position) == '\r')) {
+                ++position;
+            }
+        }
+
+        boolean tryConsume(final char c) {
+            if (!atEnd() && text.charAt(position) == c) {
+                ++position;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(final char c) {
+            if (!tryConsume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + position);
+            }
+        }
+
+        String parseString() {
+            expect('"');
+            final StringBuilder value = new StringBuilder();
+            while (true) {
+                final char c = peek();
+                ++position;
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                final char escaped = peek();
+                ++position;
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Unexpected end of JSON");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new IllegalArgumentException("Invalid escape at " + position, ex);
+                        }
+                        position += 4;
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escaped);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid escape at " + position);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of a load test.
+ */
+public final class LatencyReport {
+    private final long[] sortedNanos;
+
+    private final long failures;
+
+    private final long elapsedNanos;
+
+    /**
+     * @param latencyNanos latencies of the successful requests; sorted in place
+     */
+    public LatencyReport(final long[] latencyNanos, final long failures, final long elapsedNanos) {
+        Arrays.sort(latencyNanos);
+        this.sortedNanos = latencyNanos;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRequests() {
+        return sortedNanos.length;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    public long getPercentile(final double percentile, final TimeUnit unit) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+        return unit.convert(sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))], TimeUnit.NANOSECONDS);
+    }
+
+    public double getRequestsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : sortedNanos.length * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%d requests, %d failures, %.0f requests/s, latency p50 %d us, p99 %d us, max %d us",
+                getRequests(), failures, getRequestsPerSecond(), getPercentile(50, TimeUnit.MICROSECONDS),
+                getPercentile(99, TimeUnit.MICROSECONDS), getPercentile(100, TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.tokenizer;
+
+import java.math.BigInteger;
+
+/**
+ * Converts decimal literals to the nearest double, as {@link Double#parseDouble(String)} does, without creating
+ * strings. Literals with up to 19 significant digits and a small exponent are converted exactly with one floating
+ * point operation (Clinger's fast path), others with the Eisel-Lemire algorithm: the significand is multiplied by a
+ * 128-bit approximation of the power of ten, which is enough to round correctly in all but very rare cases. Those,
+ * hexadecimal literals, {@code NaN}, {@code Infinity} and anything malformed are left to
+ * {@link Double#parseDouble(String)}.
+ */
+public final class DoubleParser {
+    private static final int MAX_SIGNIFICANT_DIGITS = 19;
+
+    private static final int MAX_EXACT_POWER = 22;
+
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+
+    private static final double[] EXACT_POWERS = new double[MAX_EXACT_POWER + 1];
+
+    static {
+        EXACT_POWERS[0] = 1.0;
+        for (int i = 1; i < EXACT_POWERS.length; ++i) {
+            EXACT_POWERS[i] = EXACT_POWERS[i - 1] * 10.0;
+        }
+    }
+
+    private DoubleParser() {
+    }
+
+    public static double parse(final CharSequence input) {
+        return parse(input, 0, input.length());
+    }
+
+    /**
+     * Parses a number from {@code input} between {@code from} (inclusive) and {@code to} (exclusive).
+     *
+     * @throws NumberFormatException if the range is not a number
+     */
+    public static double parse(final CharSequence input, final int from, final int to) {
+        if (from < to && (input.charAt(from) == '-' || input.charAt(from) == '+')) {
+            final double value = parseUnsigned(input, from + 1, to);
+            return input.charAt(from) == '-' ? -value : value;
+        }
+        return parseUnsigned(input, from, to);
+    }
+
+    private static double parseUnsigned(final CharSequence input, final int from, final int to) {
+        int i = from;
+        // up to 19 digits, which may overflow into the sign bit; treated as unsigned
+        long significand = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+
+        while (i < to && input.charAt(i) == '0') {
+            ++i;
+        }
+        final boolean leadingZeros = i > from;
+        int integerDigits = 0;
+        for (; i < to && ExpressionScanner.isDigit(input.charAt(i)); ++i, ++integerDigits) {
+            if (digits < MAX_SIGNIFICANT_DIGITS) {
+                significand = 10 * significand + (input.charAt(i) - '0');
+                ++digits;
+            } else {
+                ++exponent;
+                truncated |= input.charAt(i) != '0';
+            }
+        }
+        int fractionDigits = 0;
+        if (i < to && input.charAt(i) == '.') {
+            ++i;
+            for (; i < to && ExpressionScanner.isDigit(input.charAt(i)); ++i, ++fractionDigits) {
+                if (digits == 0 && input.charAt(i) == '0') {
+                    --exponent;
+                } else if (digits < MAX_SIGNIFICANT_DIGITS) {
+                    significand = 10 * significand + (input.charAt(i) - '0');
+                    ++digits;
+                    --exponent;
+                } else {
+                    truncated |= input.charAt(i) != '0';
+                }
+            }
+        }
+        if (!leadingZeros && integerDigits == 0 && fractionDigits == 0) {
+            return fallback(input, from, to);
+        }
+        if (i < to && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+            ++i;
+            final boolean negativeExponent = i < to && input.charAt(i) == '-';
+            if (i < to && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+                ++i;
+            }
+            final int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < to && ExpressionScanner.isDigit(input.charAt(i)); ++i) {
+                if (explicitExponent < 100000) {
+                    explicitExponent = 10 * explicitExponent + (input.charAt(i) - '0');
+                }
+            }
+            if (i == exponentStart) {
+                return fallback(input, from, to);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i < to && i + 1 == to && "fFdD".indexOf(input.charAt(i)) >= 0) {
+            ++i;
+        }
+        if (i != to) {
+            return fallback(input, from, to);
+        }
+
+        if (significand == 0) {
+            return 0.0;
+        }
+        if (!truncated) {
+            if (significand > 0 && significand <= MAX_EXACT_SIGNIFICAND && Math.abs(exponent) <= MAX_EXACT_POWER) {
+                return exponent < 0 ? significand / EXACT_POWERS[-exponent] : significand * EXACT_POWERS[exponent];
+            }
+            final long bits = EiselLemire.toDoubleBits(significand, exponent);
+            if (bits >= 0) {
+                return Double.longBitsToDouble(bits);
+            }
+        } else {
+            // the exact significand is between the truncated one and the next one; both must round to the same double
+            final long bits = EiselLemire.toDoubleBits(significand, exponent);
+            if (bits >= 0 && bits == EiselLemire.toDoubleBits(significand + 1, exponent)) {
+                return Double.longBitsToDouble(bits);
+            }
+        }
+        return fallback(input, from, to);
+    }
+
+    private static double fallback(final CharSequence input, final int from, final int to) {
+        return Double.parseDouble(input.subSequence(from, to).toString());
+    }
+
+    private static final class EiselLemire {
+        private static final int MIN_EXPONENT = -348;
+
+        private static final int MAX_EXPONENT = 347;
+
+        private static final int DOUBLE_EXPONENT_BIAS = 1023;
+
+        private static final long MASK_32 = 0xFFFFFFFFL;
+
+        /**
+         * Truncated 128-bit significands of powers of ten, normalized so that the highest bit is set: high 64 bits at
+         * even indices, low 64 bits at odd ones.
+         */
+        private static final long[] POWERS_OF_TEN = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+
+        static {
+            final BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+            for (int e = MIN_EXPONENT; e <= MAX_EXPONENT; ++e) {
+                final BigInteger power = BigInteger.TEN.pow(Math.abs(e));
+                final BigInteger significand;
+                if (e >= 0) {
+                    final int shift = power.bitLength() - 128;
+                    significand = shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+                } else {
+                    significand = BigInteger.ONE.shiftLeft(127 + power.bitLength()).divide(power);
+                }
+                final int index = 2 * (e - MIN_EXPONENT);
+                POWERS_OF_TEN[index] = significand.shiftRight(64).longValue();
+                POWERS_OF_TEN[index + 1] = significand.and(mask).longValue();
+            }
+        }
+
+        /**
+         * @return bits of the nearest double to {@code significand * 10^exponent}, or -1 if it cannot be determined
+         *      this way
+         */
+        static long toDoubleBits(final long significand, final int exponent) {
+            if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+                return -1;
+            }
+            final int leadingZeros = Long.numberOfLeadingZeros(significand);
+            final long normalized = significand << leadingZeros;
+            long exponent2 = (217706L * exponent >> 16) + 64 + DOUBLE_EXPONENT_BIAS - leadingZeros;
+
+            final int index = 2 * (exponent - MIN_EXPONENT);
+            long high = multiplyHigh(normalized, POWERS_OF_TEN[index]);
+            long low = normalized * POWERS_OF_TEN[index];
+            if ((high & 0x1FF) == 0x1FF && unsignedLess(low + normalized, normalized)) {
+                // the truncated 64 bits of the power may change the result: use all 128
+                final long lowHigh = multiplyHigh(normalized, POWERS_OF_TEN[index + 1]);
+                final long lowLow = normalized * POWERS_OF_TEN[index + 1];
+                final long mergedLow = low + lowHigh;
+                final long mergedHigh = unsignedLess(mergedLow, low) ? high + 1 : high;
+                if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0 &&
+                        unsignedLess(lowLow + normalized, normalized)) {
+                    return -1;
+                }
+                high = mergedHigh;
+                low = mergedLow;
+            }
+
+            final long msb = high >>> 63;
+            long mantissa = high >>> (msb + 9);
+            exponent2 -= 1 ^ msb;
+            if (low == 0 && (high & 0x1FF) == 0 && (mantissa & 3) == 1) {
+                // exactly halfway between two doubles, as far as the approximation tells
+                return -1;
+            }
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            if (mantissa >>> 53 > 0) {
+                mantissa >>>= 1;
+                ++exponent2;
+            }
+            if (exponent2 <= 0 || exponent2 >= 0x7FF) {
+                // subnormal, infinite or out of range
+                return -1;
+            }
+            return exponent2 << 52 | mantissa & 0x000FFFFFFFFFFFFFL;
+        }
+
+        private static long multiplyHigh(final long x, final long y) {
+            final long x0 = x & MASK_32;
+            final long x1 = x >>> 32;
+            final long y0 = y & MASK_32;
+            final long y1 = y >>> 32;
+            final long t = x1 * y0 + (x0 * y0 >>> 32);
+            final long w1 = x0 * y1 + (t & MASK_32);
+            return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+        }
+
+        private static boolean unsignedLess(final long x, final long y) {
+            return x + Long.MIN_VALUE < y + Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.tokenizer;
+
+/**
+ * Single pass scanner producing the same tokens as {@link SimpleExpressionTokenizer}, but reporting them as a kind
+ * and a range of the input instead of substrings. Scanning allocates nothing and throws no exceptions.
+ * <p>
+ * A sign merged into the number or parameter following it is not part of the token range, as the two may be
+ * separated by whitespace; it is reported by {@link #getSign()}.
+ */
+public final class ExpressionScanner {
+    public static enum Kind {
+        Number, Parameter, Symbol, OpenBracket, ClosedBracket, Comma
+    }
+
+    private static final char NO_SIGN = 0;
+
+    private final CharSequence input;
+
+    private int pos = 0;
+
+    private boolean previousNumeric = false;
+
+    private Kind kind;
+
+    private char sign;
+
+    private int start;
+
+    private int end;
+
+    public ExpressionScanner(final CharSequence input) {
+        this.input = input;
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return {@code false} if there are no more tokens
+     */
+    public boolean next() {
+        final int tokenStart = skipWhitespace(pos);
+        if (tokenStart == input.length()) {
+            return false;
+        }
+        final int tokenEnd = scanRaw(tokenStart);
+        final char c = input.charAt(tokenStart);
+        sign = NO_SIGN;
+        if ((c == '+' || c == '-') && !previousNumeric) {
+            final int nextStart = skipWhitespace(tokenEnd);
+            if (nextStart < input.length()) {
+                final int nextEnd = scanRaw(nextStart);
+                final Kind nextKind = classify(nextStart, nextEnd);
+                if (nextKind == Kind.Number || nextKind == Kind.Parameter) {
+                    setToken(nextKind, nextStart, nextEnd);
+                    sign = c;
+                    return true;
+                }
+            }
+        }
+        setToken(classify(tokenStart, tokenEnd), tokenStart, tokenEnd);
+        return true;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return {@code '+'} or {@code '-'} if a sign was merged into this number or parameter, 0 otherwise
+     */
+    public char getSign() {
+        return sign;
+    }
+
+    public boolean isNegated() {
+        return sign == '-';
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public CharSequence getInput() {
+        return input;
+    }
+
+    /**
+     * @return text of the token, including the merged sign, as {@link SimpleExpressionTokenizer} would return it
+     */
+    public String getText() {
+        final String text = input.subSequence(start, end).toString();
+        return sign == NO_SIGN ? text : sign + text;
+    }
+
+    /**
+     * @return digit of a parameter token
+     */
+    public int getParameterIndex() {
+        return input.charAt(start + 1) - '0';
+    }
+
+    private void setToken(final Kind tokenKind, final int tokenStart, final int tokenEnd) {
+        kind = tokenKind;
+        start = tokenStart;
+        end = tokenEnd;
+        pos = tokenEnd;
+        previousNumeric = tokenKind == Kind.Number || tokenKind == Kind.Parameter;
+    }
+
+    private int skipWhitespace(final int from) {
+        int i = from;
+        while (i < input.length() && isWhitespace(input.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private int scanRaw(final int from) {
+        if (isDelimiter(input.charAt(from))) {
+            return from + 1;
+        }
+        int i = from + 1;
+        while (i < input.length() && !isDelimiter(input.charAt(i)) && !isWhitespace(input.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private Kind classify(final int from, final int to) {
+        if (to - from == 1) {
+            switch (input.charAt(from)) {
+                case '(':
+                    return Kind.OpenBracket;
+                case ')':
+                    return Kind.ClosedBracket;
+                case ',':
+                    return Kind.Comma;
+                default:
+                    break;
+            }
+        }
+        if (isParameter(from, to)) {
+            return Kind.Parameter;
+        }
+        return NumberSyntax.isNumber(input, from, to) ? Kind.Number : Kind.Symbol;
+    }
+
+    private boolean isParameter(final int from, final int to) {
+        return to - from == 3 && input.charAt(from) == '{' && isDigit(input.charAt(from + 1)) &&
+                input.charAt(from + 2) == '}';
+    }
+
+    /**
+     * Characters forming tokens of their own, as in {@link SimpleExpressionTokenizer}.
+     */
+    private static boolean isDelimiter(final char c) {
+        switch (c) {
+            case '*':
+            case '+':
+            case ',':
+            case '/':
+            case '(':
+            case ')':
+            case '^':
+            case '%':
+            case '-':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Same set of characters as {@code \s} in regular expressions.
+     */
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+}
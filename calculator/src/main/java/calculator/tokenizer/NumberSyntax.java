@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.tokenizer;
+
+/**
+ * Recognizes unsigned numbers exactly as {@link Double#parseDouble(String)} accepts them: decimal and hexadecimal
+ * literals with an optional type suffix, {@code NaN} and {@code Infinity}, surrounded by any control characters.
+ * Exponents cannot be signed, as signs always start a new token.
+ */
+public final class NumberSyntax {
+    private NumberSyntax() {
+    }
+
+    public static boolean isNumber(final CharSequence input, final int start, final int end) {
+        int from = start;
+        int to = end;
+        while (from < to && input.charAt(from) <= ' ') {
+            ++from;
+        }
+        while (to > from && input.charAt(to - 1) <= ' ') {
+            --to;
+        }
+        if (regionEquals(input, from, to, "NaN") || regionEquals(input, from, to, "Infinity")) {
+            return true;
+        }
+        if (to - from > 2 && input.charAt(from) == '0' &&
+                (input.charAt(from + 1) == 'x' || input.charAt(from + 1) == 'X')) {
+            return isHexNumber(input, from + 2, to);
+        }
+        return isDecimalNumber(input, from, to);
+    }
+
+    private static boolean isDecimalNumber(final CharSequence input, final int from, final int to) {
+        int i = from;
+        int digits = 0;
+        while (i < to && ExpressionScanner.isDigit(input.charAt(i))) {
+            ++i;
+            ++digits;
+        }
+        if (i < to && input.charAt(i) == '.') {
+            ++i;
+            while (i < to && ExpressionScanner.isDigit(input.charAt(i))) {
+                ++i;
+                ++digits;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < to && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+            ++i;
+            final int exponentStart = i;
+            while (i < to && ExpressionScanner.isDigit(input.charAt(i))) {
+                ++i;
+            }
+            if (i == exponentStart) {
+                return false;
+            }
+        }
+        return isEnd(input, i, to);
+    }
+
+    private static boolean isHexNumber(final CharSequence input, final int from, final int to) {
+        int i = from;
+        int digits = 0;
+        while (i < to && isHexDigit(input.charAt(i))) {
+            ++i;
+            ++digits;
+        }
+        if (i < to && input.charAt(i) == '.') {
+            ++i;
+            while (i < to && isHexDigit(input.charAt(i))) {
+                ++i;
+                ++digits;
+            }
+        }
+        if (digits == 0 || i == to || (input.charAt(i) != 'p' && input.charAt(i) != 'P')) {
+            return false;
+        }
+        ++i;
+        final int exponentStart = i;
+        while (i < to && ExpressionScanner.isDigit(input.charAt(i))) {
+            ++i;
+        }
+        return i > exponentStart && isEnd(input, i, to);
+    }
+
+    /**
+     * Checks that only an optional type suffix remains.
+     */
+    private static boolean isEnd(final CharSequence input, final int from, final int to) {
+        if (from == to) {
+            return true;
+        }
+        if (from + 1 == to) {
+            final char c = input.charAt(from);
+            return c == 'f' || c == 'F' || c == 'd' || c == 'D';
+        }
+        return false;
+    }
+
+    private static boolean isHexDigit(final char c) {
+        return ExpressionScanner.isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean regionEquals(final CharSequence input, final int from, final int to, final String text) {
+        if (to - from != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); ++i) {
+            if (input.charAt(from + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
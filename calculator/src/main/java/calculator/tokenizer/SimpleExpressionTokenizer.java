@@ -23,8 +23,10 @@
  */
 package calculator.tokenizer;
 
+import calculator.jfr.TokenizeEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class SimpleExpressionTokenizer implements ExpressionTokenizer {
     /**
@@ -34,17 +36,25 @@ public class SimpleExpressionTokenizer implements ExpressionTokenizer {
      */
     private static final String WITH_DELIMITER = "((?<=%1$s)|(?=%1$s))";
 
+    /**
+     * Function parameters (<code>{0}</code>) stand for numbers, so they take part in sign merging like literals.
+     */
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile("\\{\\d\\}");
+
     private final List<String> tokenStrings = new ArrayList<>();
 
     private int pos = 0;
 
     public SimpleExpressionTokenizer(final String input) {
+        final TokenizeEvent event = new TokenizeEvent();
+        event.begin();
         final String[] tokens = input.split(String.format(WITH_DELIMITER, "[*\\s+,/()^%-]"));
         for (final String token : tokens) {
             if (!token.isEmpty() && !token.matches("\\s")) {
                 tokenStrings.add(token);
             }
         }
+        event.record(input, tokenStrings.size());
     }
 
     @Override
@@ -72,6 +82,9 @@ public class SimpleExpressionTokenizer implements ExpressionTokenizer {
     }
 
     private static boolean isNumeric(final String str) {
+        if (PARAMETER_PATTERN.matcher(str).matches()) {
+            return true;
+        }
         try {
             Double.parseDouble(str);
         } catch (NumberFormatException nfe) {
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.function.vector;
+
+import calculator.function.ColumnKernels;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the widest vectors the processor supports, loaded by {@link ColumnKernels#get()} only when
+ * {@code jdk.incubator.vector} is resolved. Elements past the last full vector go through the scalar loops.
+ */
+public final class VectorColumnKernels extends ColumnKernels.Scalar {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    private static int binary(final VectorOperators.Binary operator, final double[] lhs, final double[] rhs,
+            final double[] result, final int length) {
+        final int bound = SPECIES.loopBound(length);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, lhs, i).lanewise(operator, DoubleVector.fromArray(SPECIES, rhs, i))
+                    .intoArray(result, i);
+        }
+        return bound;
+    }
+
+    private static int binary(final VectorOperators.Binary operator, final double[] lhs, final double rhs,
+            final double[] result, final int length) {
+        final int bound = SPECIES.loopBound(length);
+        final DoubleVector broadcast = DoubleVector.broadcast(SPECIES, rhs);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, lhs, i).lanewise(operator, broadcast).intoArray(result, i);
+        }
+        return bound;
+    }
+
+    private static int unary(final VectorOperators.Unary operator, final double[] values, final double[] result,
+            final int length) {
+        final int bound = SPECIES.loopBound(length);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, i).lanewise(operator).intoArray(result, i);
+        }
+        return bound;
+    }
+
+    @Override
+    public void add(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+        add(lhs, rhs, result, binary(VectorOperators.ADD, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void add(final double[] lhs, final double rhs, final double[] result, final int length) {
+        add(lhs, rhs, result, binary(VectorOperators.ADD, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void subtract(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+        subtract(lhs, rhs, result, binary(VectorOperators.SUB, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void subtract(final double[] lhs, final double rhs, final double[] result, final int length) {
+        subtract(lhs, rhs, result, binary(VectorOperators.SUB, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void multiply(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+        multiply(lhs, rhs, result, binary(VectorOperators.MUL, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void multiply(final double[] lhs, final double rhs, final double[] result, final int length) {
+        multiply(lhs, rhs, result, binary(VectorOperators.MUL, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void divide(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+        divide(lhs, rhs, result, binary(VectorOperators.DIV, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void divide(final double[] lhs, final double rhs, final double[] result, final int length) {
+        divide(lhs, rhs, result, binary(VectorOperators.DIV, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void min(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+        min(lhs, rhs, result, binary(VectorOperators.MIN, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void min(final double[] lhs, final double rhs, final double[] result, final int length) {
+        min(lhs, rhs, result, binary(VectorOperators.MIN, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void max(final double[] lhs, final double[] rhs, final double[] result, final int length) {
+        max(lhs, rhs, result, binary(VectorOperators.MAX, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void max(final double[] lhs, final double rhs, final double[] result, final int length) {
+        max(lhs, rhs, result, binary(VectorOperators.MAX, lhs, rhs, result, length), length);
+    }
+
+    @Override
+    public void abs(final double[] values, final double[] result, final int length) {
+        abs(values, result, unary(VectorOperators.ABS, values, result, length), length);
+    }
+
+    @Override
+    public void negate(final double[] values, final double[] result, final int length) {
+        negate(values, result, unary(VectorOperators.NEG, values, result, length), length);
+    }
+
+    @Override
+    public void sqrt(final double[] values, final double[] result, final int length) {
+        sqrt(values, result, unary(VectorOperators.SQRT, values, result, length), length);
+    }
+}
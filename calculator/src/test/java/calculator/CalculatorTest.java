@@ -36,10 +36,14 @@ import calculator.function.rpn.builtin.DoubleConstant;
 import calculator.function.rpn.custom.CustomConstant;
 import calculator.function.rpn.custom.CustomFunction;
 import calculator.function.rpn.custom.FunctionExecutor;
+import calculator.metrics.FunctionStatistics;
 import calculator.parser.FunctionParser;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import org.easymock.Capture;
 import org.easymock.EasyMockSupport;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -80,6 +84,7 @@ public class CalculatorTest {
         final double expected = 12.3;
 
         expect(evaluatorMock.evaluate(expr)).andReturn(expected);
+        expect(functionRepositoryMock.getFunctions()).andReturn(new HashMap<String, Function>());
         functionRepositoryMock.update(eq(Calculator.ANS), anyObject(Function.class));
 
         support.replayAll();
@@ -89,6 +94,101 @@ public class CalculatorTest {
         assertEquals(expected, testedObject.getResult(), EPSILON);
     }
 
+    @Test
+    public void testEvaluateExpression_ansDefinedOnce() throws Exception {
+        final Capture<Function> ans = new Capture<>();
+
+        expect(evaluatorMock.evaluate("first")).andReturn(1.0);
+        expect(evaluatorMock.evaluate("second")).andReturn(2.0);
+        expect(functionRepositoryMock.getFunctions()).andReturn(new HashMap<String, Function>());
+        functionRepositoryMock.update(eq(Calculator.ANS), capture(ans));
+        expect(functionRepositoryMock.getFunctions()).andAnswer(new IAnswer<Map<String, Function>>() {
+            @Override
+            public Map<String, Function> answer() {
+                return Collections.singletonMap(Calculator.ANS, ans.getValue());
+            }
+        });
+
+        support.replayAll();
+        testedObject.evaluate("first");
+        testedObject.evaluate("second");
+        support.verifyAll();
+    }
+
+    @Test
+    public void testEvaluateExpression_ansKeepsCachedExpressions() throws Exception {
+        final Calculator calculator = new Calculator();
+        calculator.evaluate("2");
+        calculator.evaluate("ans*3");
+        calculator.evaluate("ans*3");
+        assertEquals(18.0, calculator.getResult(), EPSILON);
+        assertEquals(1, calculator.getCacheStats().hitCount());
+    }
+
+    @Test
+    public void testCalculate_resultNotUpdated() throws Exception {
+        final String expr = "expression";
+
+        expect(evaluatorMock.evaluate(expr)).andReturn(12.3);
+
+        support.replayAll();
+        assertEquals(12.3, testedObject.calculate(expr), EPSILON);
+        support.verifyAll();
+
+        assertEquals(0.0, testedObject.getResult(), EPSILON);
+    }
+
+    @Test
+    public void testEvaluateExpression_compiledExpressionsCached() throws Exception {
+        final Calculator calculator = new Calculator();
+        calculator.evaluate("1+2");
+        calculator.evaluate("1+2");
+        assertEquals(1, calculator.getCacheStats().hitCount());
+    }
+
+    @Test
+    public void testTryCalculate_failureCachedAcrossEvaluations() throws Exception {
+        final Calculator calculator = new Calculator();
+        calculator.tryCalculate("undefined(1)");
+        calculator.evaluate("2");
+        calculator.evaluate("3");
+
+        assertFalse(calculator.tryCalculate("undefined(1)").isSuccess());
+        assertEquals(0, calculator.getCacheInvalidationCount());
+    }
+
+    @Test
+    public void testExecuteCommand_stats() throws Exception {
+        final Calculator calculator = new Calculator();
+        calculator.evaluate("sin(1)");
+        calculator.executeCommand(new Command.Builder().parse(":stats on").build());
+        calculator.evaluate("sin(1)");
+
+        final CommandResult result = calculator.executeCommand(new Command.Builder().parse(":stats").build());
+
+        assertEquals(1, calculator.getMetrics().getEvaluations());
+        assertTrue(result.getStringRepresentation().contains("evaluations\t1\t"));
+    }
+
+    @Test
+    public void testExecuteCommand_statsCountFunctionBodiesDefinedBefore() throws Exception {
+        final Calculator calculator = new Calculator();
+        calculator.executeCommand(new Command.Builder().parse(":func f {0}*2+1").build());
+        calculator.evaluate("f(2)");
+        calculator.executeCommand(new Command.Builder().parse(":stats on").build());
+        calculator.evaluate("f(3)");
+        calculator.evaluate("f(4)");
+
+        final Map<String, Long> invocations = new HashMap<>();
+        for (final FunctionStatistics function : calculator.getMetrics().getFunctionStatistics()) {
+            invocations.put(function.getName(), function.getInvocations());
+        }
+        assertEquals(Long.valueOf(2), invocations.get("f"));
+        assertEquals(Long.valueOf(2), invocations.get("*"));
+        assertEquals(Long.valueOf(2), invocations.get("+"));
+        assertEquals(9.0, calculator.getResult(), 0.0);
+    }
+
     @Test
     public void testEvaluateExpression_executionError() throws Exception {
         final String expr = "bad expression";
@@ -220,6 +320,7 @@ public class CalculatorTest {
     public void testExecuteCommand_clear() throws Exception {
         final Command cmd = new Command.Builder().withName("c").build();
 
+        expect(functionRepositoryMock.getFunctions()).andReturn(new HashMap<String, Function>());
         functionRepositoryMock.update(eq(Calculator.ANS), anyObject(Function.class));
 
         support.replayAll();
@@ -232,6 +333,7 @@ public class CalculatorTest {
         final Command cmd = new Command.Builder().withName("ce").build();
 
         functionRepositoryMock.clear();
+        expect(functionRepositoryMock.getFunctions()).andReturn(new HashMap<String, Function>());
         functionRepositoryMock.update(eq(Calculator.ANS), anyObject(Function.class));
 
         support.replayAll();
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import calculator.Calculator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchEvaluatorTest {
+    @Test
+    public void testRun_expressionsAndCommands() throws Exception {
+        final String input = "1+2\n:func sq {0}*{0}\r\n\nsq(ans)\n:const c 2\nc*c\n1+\n:bad\nsq(2)";
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final BatchReport report = run(input, output, 16);
+
+        final String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n", -1);
+        Assert.assertEquals(7, lines.length);
+        Assert.assertEquals("3.0", lines[0]);
+        Assert.assertEquals("9.0", lines[1]);
+        Assert.assertEquals("4.0", lines[2]);
+        Assert.assertTrue(lines[3].startsWith(BatchEvaluator.ERROR_PREFIX));
+        Assert.assertTrue(lines[4].startsWith(BatchEvaluator.ERROR_PREFIX));
+        Assert.assertEquals("4.0", lines[5]);
+        Assert.assertEquals("", lines[6]);
+        Assert.assertEquals(5, report.getExpressions());
+        Assert.assertEquals(3, report.getCommands());
+        Assert.assertEquals(2, report.getErrors());
+        Assert.assertEquals(input.length(), report.getBytesRead());
+        Assert.assertEquals(output.size(), report.getBytesWritten());
+    }
+
+    @Test
+    public void testRun_stopsAtExit() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final BatchReport report = run("1\nexit\n2\n", output, 4);
+
+        Assert.assertEquals("1.0\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(1, report.getExpressions());
+    }
+
+    @Test
+    public void testLineReader_longLinesAndUnicode() throws Exception {
+        final StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            longLine.append("1+");
+        }
+        longLine.append("ą");
+        final String input = longLine + "\né\n\nx";
+        final LineReader reader = new LineReader(
+                Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), 8);
+
+        Assert.assertEquals(longLine.toString(), reader.readLine());
+        Assert.assertEquals("é", reader.readLine());
+        Assert.assertEquals("", reader.readLine());
+        Assert.assertEquals("x", reader.readLine());
+        Assert.assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testResultWriter_bufferBoundaries() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ResultWriter writer = new ResultWriter(Channels.newChannel(output), 8);
+
+        writer.writeLine("1.0");
+        writer.writeLine("a much longer line ą");
+        writer.writeLine("é");
+        writer.flush();
+
+        Assert.assertEquals("1.0\na much longer line ą\né\n",
+                new String(output.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(output.size(), writer.getBytesWritten());
+    }
+
+    private static BatchReport run(final String input, final ByteArrayOutputStream output, final int bufferSize)
+            throws Exception {
+        return new BatchEvaluator(new Calculator(), bufferSize).run(
+                Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+    }
+}
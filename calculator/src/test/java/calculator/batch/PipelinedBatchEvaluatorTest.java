@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.batch;
+
+import calculator.Calculator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelinedBatchEvaluatorTest {
+    @Test
+    public void testRun_sameOutputAsSequential() throws Exception {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5000; ++i) {
+            input.append(i).append(" * 2 + sin(").append(i % 13).append(")\n");
+            if (i % 7 == 0) {
+                input.append("1 +\n");
+            }
+        }
+        final String expected = runSequential(input.toString());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BatchReport report = new PipelinedBatchEvaluator(new Calculator(), 4, 64, 256).run(
+                Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+
+        Assert.assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(5715, report.getExpressions());
+        Assert.assertEquals(715, report.getErrors());
+    }
+
+    @Test
+    public void testRun_definitionsAreBarriers() throws Exception {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            input.append(":const c ").append(i).append('\n');
+            for (int j = 0; j < 20; ++j) {
+                input.append("c * 10 + ").append(j).append('\n');
+            }
+            input.append(":func f {0} + c\nf(0)\n");
+        }
+        input.append(":del c\nc\nexit\n1");
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BatchReport report = new PipelinedBatchEvaluator(new Calculator(), 3, 8, 64).run(
+                Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+
+        final String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals(50 * 21 + 1, lines.length);
+        for (int i = 0; i < 50; ++i) {
+            for (int j = 0; j < 20; ++j) {
+                Assert.assertEquals(String.valueOf(i * 10.0 + j), lines[21 * i + j]);
+            }
+            Assert.assertEquals(String.valueOf((double) i), lines[21 * i + 20]);
+        }
+        Assert.assertTrue(lines[50 * 21].startsWith(BatchEvaluator.ERROR_PREFIX));
+        Assert.assertEquals(101, report.getCommands());
+    }
+
+    @Test
+    public void testRun_ansAndSaveSameAsSequential() throws Exception {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            input.append(i).append(" * 3\n");
+            if (i % 5 == 0) {
+                input.append("ans + 1\n");
+            }
+            if (i % 11 == 0) {
+                input.append("1 +\n:s s").append(i).append("\ns").append(i).append("\nans\n");
+            }
+            if (i % 17 == 0) {
+                input.append(":s t\nt * 2\n");
+            }
+        }
+        final String expected = runSequential(input.toString());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new PipelinedBatchEvaluator(new Calculator(), 4, 4, 64).run(
+                Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+
+        Assert.assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRun_definitionsReadingAnsSameAsSequential() throws Exception {
+        final StringBuilder input = new StringBuilder(":const last ans * 2\n:func next {0} + last\n");
+        input.append(":func deep next({0}) * 2\n:func plain {0} * 3\n");
+        for (int i = 0; i < 300; ++i) {
+            input.append(i).append(" * 3\n");
+            if (i % 3 == 0) {
+                input.append("last\n");
+            }
+            if (i % 7 == 0) {
+                input.append("plain(").append(i).append(")\nnext(1)\n");
+            }
+            if (i % 13 == 0) {
+                input.append("1 +\ndeep(2)\n");
+            }
+        }
+        final String expected = runSequential(input.toString());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new PipelinedBatchEvaluator(new Calculator(), 4, 4, 64).run(
+                Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+
+        Assert.assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static String runSequential(final String input) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BatchEvaluator(new Calculator()).run(
+                Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(output));
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
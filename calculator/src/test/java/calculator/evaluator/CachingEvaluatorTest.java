@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.function.rpn.RPNFunctionRepository;
+import java.util.ArrayList;
+import java.util.List;
+import org.easymock.EasyMockSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingEvaluatorTest {
+    private EasyMockSupport support;
+
+    private Evaluator evaluatorMock;
+
+    private CompiledExpression compiledMock;
+
+    private CachingEvaluator testedObject;
+
+    @Before
+    public void setUp() {
+        support = new EasyMockSupport();
+        evaluatorMock = support.createMock(Evaluator.class);
+        compiledMock = support.createMock(CompiledExpression.class);
+        testedObject = new CachingEvaluator(evaluatorMock, 1);
+    }
+
+    @Test
+    public void testCompile_cached() throws Exception {
+        expect(evaluatorMock.compile("1+2")).andReturn(compiledMock);
+        expect(compiledMock.isStale()).andReturn(false);
+
+        support.replayAll();
+        assertSame(compiledMock, testedObject.compile("1+2"));
+        assertSame(compiledMock, testedObject.compile("1+2"));
+        support.verifyAll();
+
+        assertEquals(1, testedObject.getStats().hitCount());
+        assertEquals(1, testedObject.getStats().missCount());
+    }
+
+    @Test
+    public void testCompile_staleEntryRecompiled() throws Exception {
+        final CompiledExpression recompiledMock = support.createMock(CompiledExpression.class);
+        expect(evaluatorMock.compile("x")).andReturn(compiledMock);
+        expect(compiledMock.isStale()).andReturn(true);
+        expect(evaluatorMock.compile("x")).andReturn(recompiledMock);
+
+        support.replayAll();
+        testedObject.compile("x");
+        assertSame(recompiledMock, testedObject.compile("x"));
+        support.verifyAll();
+
+        assertEquals(1, testedObject.getInvalidationCount());
+    }
+
+    @Test
+    public void testCompile_evictsOverMaximumSize() throws Exception {
+        expect(evaluatorMock.compile("1")).andReturn(compiledMock).times(2);
+        expect(evaluatorMock.compile("2")).andReturn(compiledMock);
+
+        support.replayAll();
+        testedObject.compile("1");
+        testedObject.compile("2");
+        testedObject.compile("1");
+        support.verifyAll();
+
+        assertEquals(1, testedObject.size());
+        assertEquals(2, testedObject.getStats().evictionCount());
+    }
+
+    @Test
+    public void testCompile_scanDoesNotEvictFrequentlyUsed() throws Exception {
+        final CachingEvaluator evaluator = new CachingEvaluator(new RPNEvaluator(new RPNFunctionRepository()), 200);
+        final List<String> hot = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            hot.add("sin(" + i + ") * 2");
+        }
+        for (final String expression : hot) {
+            evaluator.compile(expression);
+            evaluator.compile(expression);
+        }
+        for (int i = 0; i < 1000; ++i) {
+            evaluator.compile(i + " * 7");
+        }
+        final long misses = evaluator.getStats().missCount();
+
+        for (final String expression : hot) {
+            evaluator.compile(expression);
+        }
+
+        assertEquals(misses, evaluator.getStats().missCount());
+        assertTrue(evaluator.size() <= 200);
+    }
+
+    @Test
+    public void testTryCompile_invalidCachedUntilStale() throws Exception {
+        final InvalidExpression invalid = new InvalidExpression("foo(1)",
+                EvaluationResult.failure(EvaluationResult.Error.UndefinedFunction, 0, "foo"));
+        expect(evaluatorMock.tryCompile("foo(1)")).andReturn(invalid).times(2);
+
+        support.replayAll();
+        assertEquals(EvaluationResult.Error.UndefinedFunction, testedObject.tryEvaluate("foo(1)").getError());
+        assertSame(invalid, testedObject.tryCompile("foo(1)"));
+        support.verifyAll();
+
+        assertEquals(1, testedObject.getInvalidationCount());
+    }
+}
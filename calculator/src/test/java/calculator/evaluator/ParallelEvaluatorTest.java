@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import calculator.evaluator.bytecode.BytecodeEvaluator;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.RPNFunctionRepository;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelEvaluatorTest {
+    private static final int ROWS = 10007;
+
+    private FunctionRepository repository;
+
+    private Evaluator evaluator;
+
+    private ForkJoinPool pool;
+
+    private ParallelEvaluator testedObject;
+
+    private double[][] columns;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new RPNFunctionRepository();
+        evaluator = new RPNEvaluator(repository);
+        pool = new ForkJoinPool(4);
+        testedObject = new ParallelEvaluator(pool, 1000);
+        columns = new double[2][ROWS];
+        for (int i = 0; i < ROWS; ++i) {
+            columns[0][i] = i;
+            columns[1][i] = Math.sqrt(i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEvaluate_sameResultsAsSequential() throws Exception {
+        assertSameResults(evaluator.compile("sqrt({0}^2 + {1}^2) * 2 - sin({1})"));
+        assertSameResults(new BytecodeEvaluator(repository).compile("sqrt({0}^2 + {1}^2) * 2 - sin({1})"));
+    }
+
+    @Test
+    public void testEvaluate_smallInput() throws Exception {
+        final double[] results = new double[3];
+        testedObject.evaluate(evaluator.compile("{0} + {1}"), columns, results);
+        assertArrayEquals(new double[] {0.0, 2.0, 2.0 + Math.sqrt(2)}, results, 0.0);
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testEvaluate_failure() throws Exception {
+        testedObject.evaluate(evaluator.compile("{0} + {1} + {2}"), columns, new double[ROWS]);
+    }
+
+    private void assertSameResults(final CompiledExpression expression) throws Exception {
+        final double[] expected = new double[ROWS];
+        expression.evaluate(columns, expected);
+        final double[] results = new double[ROWS];
+        testedObject.evaluate(expression, columns, results);
+        assertArrayEquals(expected, results, 0.0);
+    }
+}
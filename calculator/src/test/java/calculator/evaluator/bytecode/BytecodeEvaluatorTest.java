@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.Evaluator;
+import calculator.evaluator.PreparedExpression;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.DoubleStack;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.AbstractFunction;
+import calculator.function.rpn.RPNFunctionRepository;
+import calculator.function.rpn.builtin.DoubleConstant;
+import calculator.function.rpn.custom.CustomConstant;
+import calculator.function.rpn.custom.CustomFunction;
+import calculator.parser.FunctionParser;
+import calculator.parser.SimpleFunctionParser;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BytecodeEvaluatorTest {
+    private FunctionRepository repository;
+
+    private Evaluator reference;
+
+    private Evaluator testedObject;
+
+    private FunctionParser parser;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new RPNFunctionRepository();
+        reference = new RPNEvaluator(repository);
+        testedObject = new BytecodeEvaluator(repository);
+        parser = new SimpleFunctionParser(new RPNEvaluator(repository));
+
+        repository.update("square", new CustomFunction(parser.parse("{0}*{0}")));
+        repository.update("dist", new CustomFunction(parser.parse("max({0},{1}) - min({0},{1})")));
+        repository.update("PI_2", new CustomConstant(parser.parse("PI/2")));
+        repository.update("ans", new DoubleConstant(0.25));
+        repository.update("twice", new BinaryFallback());
+    }
+
+    @Test
+    public void testEvaluate_sameResultsAsInterpreter() throws Exception {
+        final String[] expressions = {
+            "2+2*2", "2^2^3", "sin(PI)", "cos 0*2", "atan2(2+2, 3+3)", "log exp -1", "7-(2*PI + cos 12.3456)",
+            "1+atan2(2+2*2-2+2, log(exp(PI % E)))", "-7 % 3", "abs(-2) + sgn(-3) + sqrt(16) + neg 1",
+            "d2r 180 + r2d PI + sinh 1 + cosh 1 + tanh 1 + asin 0.5 + acos 0.5 + atan 1 + tan 1",
+            "square(3) * dist(2, 7)", "sin PI_2 + ans", "twice(3, 4) + 1", "(2)-3", "1/0"
+        };
+        for (final String expression : expressions) {
+            final CompiledExpression compiled = testedObject.compile(expression);
+            assertFalse(expression, compiled instanceof RPNProgram);
+            assertEquals(expression, reference.evaluate(expression), compiled.evaluate(), 0.0);
+        }
+    }
+
+    @Test
+    public void testEvaluate_parameters() throws Exception {
+        final CompiledExpression compiled = testedObject.compile("{1} + square({0})");
+        assertEquals(2, compiled.getNumberOfParams());
+        assertEquals(11.0, compiled.evaluate(new double[] {3.0, 2.0}), 0.0);
+    }
+
+    @Test
+    public void testPrepare_variables() throws Exception {
+        final PreparedExpression prepared = testedObject.prepare("rate * amount + fee", "amount");
+        assertTrue(prepared.getExpression() instanceof BytecodeExpression);
+        assertEquals(2, prepared.getVariableIndex("fee"));
+        assertEquals(21.0, prepared.evaluate(100.0, 0.2, 1.0), 0.0);
+    }
+
+    @Test
+    public void testEvaluateColumns() throws Exception {
+        final double[][] columns = {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}};
+        final double[] results = new double[3];
+        testedObject.compile("{1} + square({0})").evaluate(columns, results);
+        assertArrayEquals(new double[] {5.0, 9.0, 15.0}, results, 0.0);
+    }
+
+    @Test
+    public void testExecute_asFunctionBody() throws Exception {
+        final CompiledExpression compiled = testedObject.compile("{0} - {1}");
+        final DoubleStack stack = new DoubleStack();
+        stack.push(10.0);
+        stack.push(3.0);
+        compiled.execute(stack);
+        assertEquals(1, stack.size());
+        assertEquals(7.0, stack.peek(), 0.0);
+    }
+
+    @Test
+    public void testIsStale_inlinedBodyRedefined() throws Exception {
+        repository.update("inner", new CustomFunction(parser.parse("{0}+1")));
+        repository.update("outer", new CustomFunction(parser.parse("inner({0})*2")));
+        final CompiledExpression compiled = testedObject.compile("outer(1)");
+        assertEquals(4.0, compiled.evaluate(), 0.0);
+        assertFalse(compiled.isStale());
+
+        repository.update("inner", new CustomFunction(parser.parse("{0}+2")));
+        assertTrue(compiled.isStale());
+        assertEquals(6.0, testedObject.evaluate("outer(1)"), 0.0);
+    }
+
+    @Test
+    public void testCompile_recursiveDefinitionLeftToInterpreter() throws Exception {
+        repository.update("loop", new CustomFunction(parser.parse("loop({0})")));
+        assertTrue(testedObject.compile("loop(1)") instanceof RPNProgram);
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testEvaluate_notEnoughParameters() throws Exception {
+        testedObject.evaluate("1 + ");
+    }
+
+    private static final class BinaryFallback extends AbstractFunction {
+        @Override
+        public int getNumberOfParams() {
+            return 2;
+        }
+
+        @Override
+        public void apply(final DoubleStack stack) {
+            final double rhs = stack.pop();
+            final double lhs = stack.pop();
+            stack.push(2 * lhs + rhs);
+        }
+    }
+}
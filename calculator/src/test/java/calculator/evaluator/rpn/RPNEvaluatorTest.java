@@ -24,21 +24,51 @@
 package calculator.evaluator.rpn;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.EvaluationResult;
 import calculator.evaluator.Evaluator;
+import calculator.evaluator.InvalidExpression;
+import calculator.evaluator.PreparedExpression;
 import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.FunctionNotDefinedException;
+import calculator.exception.execute.StackUnderflowException;
+import calculator.exception.parse.FunctionParseException;
+import calculator.function.DoubleStack;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.AbstractConstant;
 import calculator.function.rpn.RPNFunctionRepository;
+import calculator.function.rpn.builtin.DoubleConstant;
+import calculator.function.rpn.custom.CustomFunction;
+import calculator.parser.SimpleFunctionParser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Before;
 import org.junit.Test;
 
 public class RPNEvaluatorTest {
     private final static double EPSILON = 1e-10;
 
+    private FunctionRepository repository;
+
     private Evaluator testedObject;
 
     @Before
     public void setUp() {
-        testedObject = new RPNEvaluator(new RPNFunctionRepository());
+        repository = new RPNFunctionRepository();
+        testedObject = new RPNEvaluator(repository);
     }
 
     @Test
@@ -131,4 +161,259 @@ public class RPNEvaluatorTest {
         final String expression = "1 + ";
         testedObject.evaluate(expression);
     }
+
+    @Test
+    public void testCompile_reusable() throws Exception {
+        final CompiledExpression compiled = testedObject.compile("1+atan2(2+2*2-2+2, log(exp(PI % E)))");
+        final double expected = 1 + Math.atan2(2.0 + 2.0 * 2.0 - 2.0 + 2.0, Math.log(Math.exp(Math.PI % Math.E)));
+        assertEquals(expected, compiled.evaluate(), EPSILON);
+        assertEquals(expected, compiled.evaluate(), EPSILON);
+    }
+
+    @Test
+    public void testCompile_postfixProgram() throws Exception {
+        final RPNProgram program = (RPNProgram)testedObject.compile("{0} + {1} * {2}");
+        assertEquals(5, program.getLength());
+        assertEquals(RPNProgram.OP_LOAD, program.getOpcode(0));
+        assertEquals(RPNProgram.OP_LOAD, program.getOpcode(1));
+        assertEquals(RPNProgram.OP_LOAD, program.getOpcode(2));
+        assertEquals(RPNProgram.OP_CALL, program.getOpcode(3));
+        assertEquals(RPNProgram.OP_CALL, program.getOpcode(4));
+        assertEquals(14.0, program.evaluate(new double[] {2.0, 3.0, 4.0}), EPSILON);
+    }
+
+    @Test
+    public void testCompile_symbolsBoundAtCompileTime() throws Exception {
+        repository.update("x", new DoubleConstant(2.0));
+        final CompiledExpression compiled = testedObject.compile("x * 10");
+        repository.update("x", new DoubleConstant(3.0));
+        assertEquals(20.0, compiled.evaluate(), EPSILON);
+        assertEquals(30.0, testedObject.evaluate("x * 10"), EPSILON);
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testCompile_undefinedFunction() throws Exception {
+        testedObject.compile("1 + undefined(2)");
+    }
+
+    @Test
+    public void testCompile_missingOperandReportedWithPosition() throws Exception {
+        try {
+            testedObject.compile("(max(1)) * 2");
+        } catch (ExpressionExecuteException ex) {
+            assertEquals(1, ((StackUnderflowException) ex.getCause()).getPosition());
+            return;
+        }
+        fail();
+    }
+
+    @Test
+    public void testCompile_noValueReportedAtEnd() throws Exception {
+        try {
+            testedObject.compile("( )");
+        } catch (ExpressionExecuteException ex) {
+            assertEquals(3, ((StackUnderflowException) ex.getCause()).getPosition());
+            return;
+        }
+        fail();
+    }
+
+    @Test
+    public void testCompile_maxDepth() throws Exception {
+        final RPNProgram program = new RPNCompiler(repository, "1 + 2 * (3 - max(4, 5))").compile();
+        assertTrue(program.isVerified());
+        assertEquals(-1, program.getInvalidInstruction());
+        assertEquals(5, program.getMaxDepth());
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testEvaluate_unverifiedProgramChecked() throws Exception {
+        final RPNProgram program = new RPNProgram.Builder("1 +", repository).push(1).call(repository.get("+")).build();
+        assertFalse(program.isVerified());
+        assertEquals(1, program.getInvalidInstruction());
+        program.evaluate();
+    }
+
+    @Test
+    public void testTryEvaluate_success() throws Exception {
+        final EvaluationResult result = testedObject.tryEvaluate("2 * (3 + 4)");
+        assertTrue(result.isSuccess());
+        assertEquals(14.0, result.getValue(), EPSILON);
+        assertNull(result.getError());
+    }
+
+    @Test
+    public void testTryEvaluate_undefinedFunction() throws Exception {
+        final EvaluationResult result = testedObject.tryEvaluate("1 + undefined(2)");
+        assertFalse(result.isSuccess());
+        assertTrue(Double.isNaN(result.getValue()));
+        assertEquals(EvaluationResult.Error.UndefinedFunction, result.getError());
+        assertEquals(4, result.getPosition());
+        assertEquals("undefined", result.getToken());
+    }
+
+    @Test
+    public void testTryCompile_tokenCount() throws Exception {
+        assertEquals(6, testedObject.tryCompile("2 * sin(1)").getTokenCount());
+        assertEquals(3, testedObject.tryCompile("1 * undefined(2)").getTokenCount());
+    }
+
+    @Test
+    public void testTryEvaluate_notEnoughParameters() throws Exception {
+        final EvaluationResult result = testedObject.tryEvaluate("(max(1)) * 2");
+        assertEquals(EvaluationResult.Error.NotEnoughParameters, result.getError());
+        assertEquals(1, result.getPosition());
+    }
+
+    @Test
+    public void testTryEvaluate_invalidFunctionBody() throws Exception {
+        repository.update("bad", new CustomFunction(new SimpleFunctionParser(testedObject).parse("{0} + nothing")));
+        final EvaluationResult result = testedObject.tryEvaluate("bad(1)");
+        assertEquals(EvaluationResult.Error.UndefinedFunction, result.getError());
+        assertEquals(-1, result.getPosition());
+    }
+
+    @Test
+    public void testEvaluate_functionBodiesResolvedInSnapshot() throws Exception {
+        final SimpleFunctionParser parser = new SimpleFunctionParser(testedObject);
+        repository.update("g", new CustomFunction(parser.parse("{0}*2")));
+        repository.update("f", new CustomFunction(parser.parse("g({0})")));
+        repository.update("redefine", new AbstractConstant() {
+            @Override
+            public void apply(final DoubleStack stack) throws ExpressionExecuteException {
+                try {
+                    repository.update("g", new CustomFunction(parser.parse("{0}*3")));
+                } catch (FunctionParseException ex) {
+                    throw new ExpressionExecuteException("redefine", ex);
+                }
+                stack.push(0.0);
+            }
+        });
+
+        assertEquals(10.0, testedObject.evaluate("redefine + f(5)"), EPSILON);
+        assertEquals(15.0, testedObject.evaluate("redefine + f(5)"), EPSILON);
+    }
+
+    @Test
+    public void testTryCompile_invalidStaleAfterDefinition() throws Exception {
+        final CompiledExpression invalid = testedObject.tryCompile("1 + later(2)");
+        assertFalse(invalid.isStale());
+
+        repository.update("later", new CustomFunction(new SimpleFunctionParser(testedObject).parse("{0} * 3")));
+
+        assertTrue(invalid.isStale());
+        assertEquals(7.0, testedObject.tryEvaluate("1 + later(2)").getValue(), EPSILON);
+    }
+
+    @Test
+    public void testCompile_sameFailureAsTryCompile() throws Exception {
+        final CompiledExpression invalid = testedObject.tryCompile("1 + undefined(2)");
+        assertTrue(invalid instanceof InvalidExpression);
+        try {
+            testedObject.compile("1 + undefined(2)");
+        } catch (ExpressionExecuteException ex) {
+            assertTrue(ex.getCause() instanceof FunctionNotDefinedException);
+            assertEquals("undefined", ex.getCause().getMessage());
+            return;
+        }
+        fail();
+    }
+
+    @Test
+    public void testPrepare_freeIdentifiersBecomeVariables() throws Exception {
+        final PreparedExpression prepared = testedObject.prepare("a * x + b");
+        assertEquals(Arrays.asList("a", "x", "b"), prepared.getVariableNames());
+        assertEquals(1, prepared.getVariableIndex("x"));
+        assertEquals(-1, prepared.getVariableIndex("y"));
+        assertEquals(7.0, prepared.evaluate(2.0, 3.0, 1.0), EPSILON);
+        assertEquals(9.0, prepared.evaluate(2.0, 4.0, 1.0), EPSILON);
+    }
+
+    @Test
+    public void testPrepare_declaredVariablesShadowConstants() throws Exception {
+        repository.update("x", new DoubleConstant(100.0));
+        final PreparedExpression prepared = testedObject.prepare("a * x + sin(PI)", "x");
+        assertEquals(Arrays.asList("x", "a"), prepared.getVariableNames());
+
+        final Map<String, Double> values = new HashMap<>();
+        values.put("x", 3.0);
+        values.put("a", 5.0);
+        assertEquals(15.0, prepared.evaluate(values), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrepare_unboundVariable() throws Exception {
+        testedObject.prepare("a * x").evaluate(Collections.singletonMap("a", 1.0));
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testPrepare_notEnoughValues() throws Exception {
+        testedObject.prepare("a * x").evaluate(1.0);
+    }
+
+    @Test
+    public void testEvaluateColumns_sameResultsAsRows() throws Exception {
+        repository.update("twice", new CustomFunction(new SimpleFunctionParser(testedObject).parse("2*{0}")));
+        final String[] expressions = {
+            "{0} * {1} + 3",
+            "sqrt({0}*{0} + {1}*{1}) / sqrt({0}*{0} + {1}*{1})",
+            "max({0}, {1}) ^ 2 % 7 - atan2({1}, {0})",
+            "twice(sin {0}) * PI",
+            "{0} ^ 0 + {1} ^ 1 - {0} ^ 2 + {1} ^ 3 % 5 / 4",
+            "min({0}, 2.5) * max({1}, 0)",
+            "(1)-{1}",
+            "abs({1}) * sgn({0}) + sqrt(abs {0}) - neg({1}) * -{0}",
+            "E",
+        };
+        final int rows = 2 * ColumnExecutor.BLOCK_SIZE + 17;
+        final double[][] columns = new double[2][rows];
+        for (int i = 0; i < rows; ++i) {
+            columns[0][i] = i * 0.37 - 100;
+            columns[1][i] = 50 - i * 1.3;
+        }
+        for (final String expression : expressions) {
+            final CompiledExpression compiled = testedObject.compile(expression);
+            final double[] results = new double[rows];
+            compiled.evaluate(columns, results);
+            for (int i = 0; i < rows; ++i) {
+                assertEquals(expression, compiled.evaluate(new double[] {columns[0][i], columns[1][i]}), results[i], 0.0);
+            }
+        }
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testEvaluateColumns_underflow() throws Exception {
+        testedObject.compile("1 + 2 *").evaluate(new double[0][], new double[3]);
+    }
+
+    @Test
+    public void testEvaluate_sharedBetweenThreads() throws Exception {
+        repository.update("poly", new CustomFunction(new SimpleFunctionParser(testedObject).parse("{0}*{0} - {0}/2")));
+        final CompiledExpression compiled = testedObject.compile("{0} % 3 + poly({0})");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; ++thread) {
+                final double param = thread + 1;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        final double expected = param * param - param / 2 + param % 3;
+                        for (int i = 0; i < 20000; ++i) {
+                            if (compiled.evaluate(new double[] {param}) != expected ||
+                                    testedObject.evaluate(param + " * 2") != 2 * param) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (final Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
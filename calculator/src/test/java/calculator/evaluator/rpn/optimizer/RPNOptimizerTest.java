@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.evaluator.rpn.optimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import calculator.evaluator.bytecode.BytecodeCompiler;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.function.DoubleStack;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.RPNFunctionRepository;
+import calculator.function.rpn.builtin.DoubleConstant;
+import calculator.function.rpn.custom.CustomFunction;
+import calculator.function.rpn.custom.FunctionExecutor;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RPNOptimizerTest {
+    private FunctionRepository repository;
+
+    private RPNEvaluator evaluator;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = new RPNFunctionRepository();
+        evaluator = new RPNEvaluator(repository);
+        repository.update("x", new DoubleConstant(3.0));
+        repository.update("z", new DoubleConstant(-0.0));
+    }
+
+    @Test
+    public void testOptimize_foldsBuiltinConstants() throws Exception {
+        final RPNProgram program = compile("7-(2*PI + cos 12.3456)");
+        assertEquals(1, program.getLength());
+        assertEquals(RPNProgram.OP_PUSH, program.getOpcode(0));
+        assertEquals(7 - (2 * Math.PI + Math.cos(12.3456)), program.evaluate(), 0.0);
+    }
+
+    @Test
+    public void testOptimize_keepsUserDefinedSymbols() throws Exception {
+        final RPNProgram program = compile("x * (2 + 3)");
+        assertEquals(3, program.getLength());
+        assertEquals(15.0, program.evaluate(), 0.0);
+
+        repository.update("x", new DoubleConstant(4.0));
+        assertEquals(20.0, evaluator.evaluate("x * (2 + 3)"), 0.0);
+    }
+
+    @Test
+    public void testOptimize_identities() throws Exception {
+        assertEquals(1, compile("x * 1").getLength());
+        assertEquals(1, compile("1 * x").getLength());
+        assertEquals(1, compile("x / 1").getLength());
+        assertEquals(1, compile("x ^ (3 - 2)").getLength());
+        assertEquals(1, compile("{0} - 0").getLength());
+        assertEquals(1, compile("{0} * 1").getLength());
+    }
+
+    @Test
+    public void testOptimize_preservesSignedZero() throws Exception {
+        final RPNProgram program = compile("{0} + 0");
+        assertEquals(3, program.getLength());
+        assertEquals(Double.POSITIVE_INFINITY, 1.0 / program.evaluate(new double[] {-0.0}), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, 1.0 / compile("z * 1").evaluate(), 0.0);
+    }
+
+    @Test
+    public void testOptimize_keepsLeftoverValues() throws Exception {
+        final RPNProgram program = compile("(2)-3");
+        assertEquals(-3.0, program.evaluate(), 0.0);
+        assertEquals(2, program.getLength());
+    }
+
+    @Test
+    public void testOptimize_sharesCommonSubexpressions() throws Exception {
+        final RPNProgram program = compile("sqrt({0}*{0} + {1}*{1}) / sqrt({0}*{0} + {1}*{1}) * {0}");
+        assertEquals(13, program.getLength());
+        assertEquals(1, program.getNumberOfTemps());
+        assertEquals(3.0, program.evaluate(new double[] {3.0, 4.0}), 0.0);
+        assertEquals(3.0, new BytecodeCompiler().compile(program).evaluate(new double[] {3.0, 4.0}), 0.0);
+    }
+
+    @Test
+    public void testOptimize_doesNotShareImpureCalls() throws Exception {
+        final int[] calls = new int[1];
+        repository.update("next", new CustomFunction(new FunctionExecutor() {
+            @Override
+            public int getNumberOfParams() {
+                return 1;
+            }
+
+            @Override
+            public void execute(final DoubleStack stack) {
+                stack.push(stack.pop() + ++calls[0]);
+            }
+        }));
+        final RPNProgram program = compile("next(sin {0}) * next(sin {0})");
+        assertEquals(1, program.getNumberOfTemps());
+        assertEquals(2.0, program.evaluate(new double[] {0.0}), 0.0);
+        assertEquals(2, calls[0]);
+    }
+
+    @Test(expected = Exception.class)
+    public void testOptimize_underflowLeftForRuntime() throws Exception {
+        compile("1 + 2 *").evaluate();
+    }
+
+    private RPNProgram compile(final String expression) throws Exception {
+        return (RPNProgram)evaluator.compile(expression);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.exception;
+
+import calculator.exception.command.UnknownCommandException;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.exception.execute.FunctionNotDefinedException;
+import calculator.exception.parse.FunctionParseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StackTracesTest {
+    @After
+    public void tearDown() {
+        StackTraces.setEnabled(true);
+    }
+
+    @Test
+    public void testEnabled_byDefault() {
+        Assert.assertTrue(StackTraces.isEnabled());
+        Assert.assertTrue(new FunctionNotDefinedException("foo").getStackTrace().length > 0);
+    }
+
+    @Test
+    public void testDisabled_noStackTraces() {
+        StackTraces.setEnabled(false);
+
+        final FunctionNotDefinedException cause = new FunctionNotDefinedException("foo");
+        final ExpressionExecuteException ex = new ExpressionExecuteException("foo(1)", cause);
+
+        Assert.assertEquals(0, ex.getStackTrace().length);
+        Assert.assertEquals(0, cause.getStackTrace().length);
+        Assert.assertSame(cause, ex.getCause());
+        Assert.assertEquals("foo", cause.getMessage());
+        Assert.assertEquals(0, new FunctionParseException("x").getStackTrace().length);
+        Assert.assertEquals(0, new UnknownCommandException().getStackTrace().length);
+    }
+}
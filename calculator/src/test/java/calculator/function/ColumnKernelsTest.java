@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.function;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ColumnKernelsTest {
+    private static final double[] VALUES = { 1.5, -2.25, 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 3e-300, -7.0, 1e10 };
+
+    private static final int MAX_LENGTH = 37;
+
+    private final ColumnKernels kernels = ColumnKernels.get();
+
+    private final ColumnKernels scalar = new ColumnKernels.Scalar();
+
+    private static double[] column(final int length, final int offset) {
+        final double[] column = new double[length];
+        for (int i = 0; i < length; ++i) {
+            column[i] = VALUES[(i * 5 + offset) % VALUES.length];
+        }
+        return column;
+    }
+
+    private static void assertSameBits(final double[] expected, final double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals("element " + i, Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]));
+        }
+    }
+
+    private interface BinaryKernel {
+        void apply(ColumnKernels kernels, double[] lhs, double[] rhs, double[] result, int length);
+    }
+
+    private interface BroadcastKernel {
+        void apply(ColumnKernels kernels, double[] lhs, double rhs, double[] result, int length);
+    }
+
+    private interface UnaryKernel {
+        void apply(ColumnKernels kernels, double[] values, double[] result, int length);
+    }
+
+    private void assertSameAsScalar(final BinaryKernel kernel) {
+        for (int length = 0; length <= MAX_LENGTH; ++length) {
+            for (int offset = 0; offset < VALUES.length; ++offset) {
+                final double[] lhs = column(length, 0);
+                final double[] rhs = column(length, offset);
+                final double[] expected = new double[length];
+                final double[] actual = new double[length];
+                kernel.apply(scalar, lhs, rhs, expected, length);
+                kernel.apply(kernels, lhs, rhs, actual, length);
+                assertSameBits(expected, actual);
+            }
+        }
+    }
+
+    private void assertSameAsScalar(final BroadcastKernel kernel) {
+        for (int length = 0; length <= MAX_LENGTH; ++length) {
+            for (final double rhs : VALUES) {
+                final double[] lhs = column(length, 0);
+                final double[] expected = new double[length];
+                final double[] actual = new double[length];
+                kernel.apply(scalar, lhs, rhs, expected, length);
+                kernel.apply(kernels, lhs, rhs, actual, length);
+                assertSameBits(expected, actual);
+            }
+        }
+    }
+
+    private void assertSameAsScalar(final UnaryKernel kernel) {
+        for (int length = 0; length <= MAX_LENGTH; ++length) {
+            final double[] values = column(length, 0);
+            final double[] expected = new double[length];
+            kernel.apply(scalar, values, expected, length);
+            kernel.apply(kernels, values, values, length);
+            assertSameBits(expected, values);
+        }
+    }
+
+    @Test
+    public void testGet_vectorizedWhenModulePresent() throws Exception {
+        final boolean present = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        final boolean enabled = !"false".equals(System.getProperty(ColumnKernels.VECTOR_PROPERTY));
+        assertEquals(present && enabled && hasVectorImplementation(), kernels.isVectorized());
+    }
+
+    private static boolean hasVectorImplementation() {
+        return ColumnKernels.class.getClassLoader().getResource(
+                ColumnKernels.VECTOR_IMPLEMENTATION.replace('.', '/') + ".class") != null;
+    }
+
+    @Test
+    public void testBinary_sameAsScalar() throws Exception {
+        assertSameAsScalar(new BinaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double[] rhs,
+                    final double[] result, final int length) {
+                kernels.add(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BinaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double[] rhs,
+                    final double[] result, final int length) {
+                kernels.subtract(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BinaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double[] rhs,
+                    final double[] result, final int length) {
+                kernels.multiply(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BinaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double[] rhs,
+                    final double[] result, final int length) {
+                kernels.divide(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BinaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double[] rhs,
+                    final double[] result, final int length) {
+                kernels.min(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BinaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double[] rhs,
+                    final double[] result, final int length) {
+                kernels.max(lhs, rhs, result, length);
+            }
+        });
+    }
+
+    @Test
+    public void testBroadcast_sameAsScalar() throws Exception {
+        assertSameAsScalar(new BroadcastKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double rhs,
+                    final double[] result, final int length) {
+                kernels.add(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BroadcastKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double rhs,
+                    final double[] result, final int length) {
+                kernels.subtract(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BroadcastKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double rhs,
+                    final double[] result, final int length) {
+                kernels.multiply(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BroadcastKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double rhs,
+                    final double[] result, final int length) {
+                kernels.divide(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BroadcastKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double rhs,
+                    final double[] result, final int length) {
+                kernels.min(lhs, rhs, result, length);
+            }
+        });
+        assertSameAsScalar(new BroadcastKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] lhs, final double rhs,
+                    final double[] result, final int length) {
+                kernels.max(lhs, rhs, result, length);
+            }
+        });
+    }
+
+    @Test
+    public void testUnary_sameAsScalarInPlace() throws Exception {
+        assertSameAsScalar(new UnaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] values, final double[] result,
+                    final int length) {
+                kernels.abs(values, result, length);
+            }
+        });
+        assertSameAsScalar(new UnaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] values, final double[] result,
+                    final int length) {
+                kernels.negate(values, result, length);
+            }
+        });
+        assertSameAsScalar(new UnaryKernel() {
+            @Override
+            public void apply(final ColumnKernels kernels, final double[] values, final double[] result,
+                    final int length) {
+                kernels.sqrt(values, result, length);
+            }
+        });
+    }
+}
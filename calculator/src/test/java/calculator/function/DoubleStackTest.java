@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EmptyStackException;
+import org.junit.Test;
+
+public class DoubleStackTest {
+    private static final double EPSILON = 1e-10;
+
+    @Test
+    public void testPushPop_growsBeyondInitialCapacity() throws Exception {
+        final DoubleStack stack = new DoubleStack(2);
+        for (int i = 0; i < 100; ++i) {
+            stack.push(i);
+        }
+        assertEquals(100, stack.size());
+        for (int i = 99; i >= 0; --i) {
+            assertEquals(i, stack.pop(), EPSILON);
+        }
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void testPeek() throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        stack.push(1.5);
+        stack.push(2.5);
+        assertEquals(2.5, stack.peek(), EPSILON);
+        assertEquals(2, stack.size());
+    }
+
+    @Test(expected = EmptyStackException.class)
+    public void testPop_empty() throws Exception {
+        new DoubleStack().pop();
+    }
+
+    @Test(expected = EmptyStackException.class)
+    public void testPeek_afterClear() throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        stack.push(1.0);
+        stack.clear();
+        stack.peek();
+    }
+}
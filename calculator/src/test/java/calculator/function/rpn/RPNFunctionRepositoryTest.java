@@ -23,14 +23,21 @@
  */
 package calculator.function.rpn;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import calculator.exception.execute.FunctionNotDefinedException;
 import calculator.exception.parse.FunctionAlreadyExistsException;
 import calculator.exception.parse.WrongFunctionNameException;
 import calculator.function.Function;
+import calculator.function.FunctionRepository;
 import calculator.function.rpn.builtin.BuiltinFunction;
+import calculator.function.rpn.builtin.DoubleConstant;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -88,4 +95,49 @@ public class RPNFunctionRepositoryTest {
     public void testRegisterFunction_wrongName() throws Exception {
         factory.update("wrong-name", null);
     }
+
+    @Test
+    public void testSnapshot_unaffectedByModifications() throws Exception {
+        final Function constant = new DoubleConstant(1.0);
+        factory.update("x", constant);
+        factory.update("y", constant);
+        final Map<String, Function> version = factory.getFunctions();
+        final FunctionRepository snapshot = factory.snapshot();
+
+        factory.update("x", new DoubleConstant(2.0));
+        factory.delete("y");
+        factory.update("z", constant);
+
+        assertSame(constant, snapshot.get("x"));
+        assertSame(constant, snapshot.get("y"));
+        assertNotNull(snapshot.get("sin"));
+        assertEquals(2, version.size());
+        assertEquals(2, snapshot.getFunctions().size());
+        assertNotSame(constant, factory.get("x"));
+
+        factory.clear();
+        assertSame(constant, snapshot.get("x"));
+        assertTrue(factory.getFunctions().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshot_readOnly() throws Exception {
+        factory.snapshot().update("x", new DoubleConstant(1.0));
+    }
+
+    @Test
+    public void testFindName_regionOfExpression() throws Exception {
+        factory.update("x", new DoubleConstant(1.0));
+        final FunctionRepository snapshot = factory.snapshot();
+        factory.delete("x");
+        final String expression = "2*sin(x)+sinh(y)";
+
+        assertEquals("sin", factory.findName(expression, 2, 5));
+        assertEquals("sinh", factory.findName(expression, 9, 13));
+        assertEquals("+", factory.findName(expression, 8, 9));
+        assertNull(factory.findName(expression, 6, 7));
+        assertEquals("x", snapshot.findName(expression, 6, 7));
+        assertNull(factory.findName(expression, 14, 15));
+        assertNull(factory.findName(expression, 2, 4));
+    }
 }
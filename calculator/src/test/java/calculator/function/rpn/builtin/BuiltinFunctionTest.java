@@ -24,13 +24,17 @@
 package calculator.function.rpn.builtin;
 
 import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.BroadcastFunction;
+import calculator.function.ColumnFunction;
+import calculator.function.DoubleStack;
 import calculator.function.Function;
+import calculator.function.UncheckedFunction;
 import java.util.Collection;
 import java.util.List;
-import java.util.Stack;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -83,7 +87,7 @@ public class BuiltinFunctionTest {
 
     @Test
     public void testExecute() throws Exception {
-        Stack<Double> stack = new Stack<>();
+        DoubleStack stack = new DoubleStack();
         for (final double param : params) {
             stack.push(param);
         }
@@ -91,8 +95,37 @@ public class BuiltinFunctionTest {
         assertEquals(expectedResult, stack.peek(), EPSILON);
     }
 
+    @Test
+    public void testApplyUnchecked() throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        stack.push(-7.0);
+        for (final double param : params) {
+            stack.push(param);
+        }
+        ((UncheckedFunction) function).applyUnchecked(stack);
+        assertEquals(2, stack.size());
+        assertEquals(expectedResult, stack.peek(), EPSILON);
+    }
+
+    @Test
+    public void testApply_columns() throws Exception {
+        final double[][] args = new double[params.size()][];
+        for (int i = 0; i < args.length; ++i) {
+            args[i] = new double[] {params.get(i), params.get(i), 0.0};
+        }
+        final double[] result = new double[3];
+        ((ColumnFunction) function).apply(args, result, 2);
+        assertArrayEquals(new double[] {expectedResult, expectedResult, 0.0}, result, EPSILON);
+
+        if (function instanceof BroadcastFunction) {
+            final double[] broadcast = new double[2];
+            ((BroadcastFunction) function).apply(args[0], params.get(1), broadcast, 2);
+            assertArrayEquals(new double[] {expectedResult, expectedResult}, broadcast, EPSILON);
+        }
+    }
+
     @Test(expected = NotEnoughParametersException.class)
     public void testExecute_notEnoughParameters() throws Exception {
-        function.apply(new Stack<Double>());
+        function.apply(new DoubleStack());
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.jfr;
+
+import calculator.Calculator;
+import calculator.command.Command;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.tokenizer.SimpleExpressionTokenizer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CalculatorEventsTest {
+    private static final String[] EVENTS = {
+        "calculator.Tokenize", "calculator.Compile", "calculator.Evaluate", "calculator.CustomFunction",
+        "calculator.RepositoryUpdate"
+    };
+
+    @Test
+    public void testEvents_recordedWithoutThreshold() throws Exception {
+        final List<RecordedEvent> events = record(Duration.ZERO);
+
+        final RecordedEvent tokenize = find(events, "calculator.Tokenize");
+        Assert.assertEquals(9, tokenize.getInt("expressionLength"));
+        Assert.assertEquals(6, tokenize.getInt("tokenCount"));
+
+        final RecordedEvent compile = find(events, "calculator.Compile");
+        Assert.assertTrue(compile.getInt("tokenCount") > 0);
+        Assert.assertTrue(compile.getInt("instructionCount") > 0);
+
+        final RecordedEvent evaluate = find(events, "calculator.Evaluate");
+        Assert.assertFalse(evaluate.getBoolean("failed"));
+
+        final RecordedEvent function = find(events, "calculator.CustomFunction");
+        Assert.assertEquals("{0}*{1}", function.getString("body"));
+        Assert.assertEquals(2, function.getInt("parameterCount"));
+
+        final RecordedEvent update = find(events, "calculator.RepositoryUpdate");
+        Assert.assertEquals("update", update.getString("operation"));
+    }
+
+    @Test
+    public void testEvents_failedEvaluation() throws Exception {
+        boolean failed = false;
+        for (final RecordedEvent event : record(Duration.ZERO)) {
+            if ("calculator.Evaluate".equals(event.getEventType().getName())) {
+                failed |= event.getBoolean("failed");
+            }
+        }
+        Assert.assertTrue(failed);
+    }
+
+    @Test
+    public void testEvents_fastOperationsBelowThreshold() throws Exception {
+        Assert.assertTrue(record(Duration.ofHours(1)).isEmpty());
+    }
+
+    private static List<RecordedEvent> record(final Duration threshold) throws Exception {
+        final Path file = Files.createTempFile("calculator", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (final String event : EVENTS) {
+                recording.enable(event).withThreshold(threshold);
+            }
+            recording.start();
+
+            new SimpleExpressionTokenizer("sin(1)+ 2");
+            final Calculator calculator = new Calculator();
+            calculator.executeCommand(new Command.Builder().parse(":func mul {0}*{1}").build());
+            calculator.evaluate("mul(2, 3) + 1");
+            try {
+                calculator.evaluate("undefined(1)");
+            } catch (ExpressionExecuteException ex) {
+                // recorded as a failed evaluation
+            }
+
+            recording.stop();
+            recording.dump(file);
+            final List<RecordedEvent> events = new ArrayList<>();
+            for (final RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().startsWith("calculator.")) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static RecordedEvent find(final List<RecordedEvent> events, final String name) {
+        for (final RecordedEvent event : events) {
+            if (name.equals(event.getEventType().getName())) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + name + " event in " + events);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import calculator.evaluator.CompiledExpression;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.evaluator.rpn.RPNProgram;
+import calculator.exception.execute.ExpressionExecuteException;
+import calculator.function.rpn.RPNFunctionRepository;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.ObjectName;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EvaluationMetricsTest {
+    private static final double EPSILON = 1e-10;
+
+    private EvaluationMetrics metrics;
+
+    private RPNEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        metrics = new EvaluationMetrics();
+        evaluator = new RPNEvaluator(new RPNFunctionRepository(), metrics);
+    }
+
+    @Test
+    public void testCompile_disabledIsNotInstrumented() throws Exception {
+        final CompiledExpression compiled = evaluator.compile("sin({0}) * 2");
+
+        Assert.assertTrue(compiled instanceof RPNProgram);
+        Assert.assertEquals(Math.sin(2) * 2, compiled.evaluate(new double[] {2}), EPSILON);
+        Assert.assertEquals(0, metrics.getEvaluations());
+        Assert.assertTrue(metrics.getFunctionStatistics().isEmpty());
+    }
+
+    @Test
+    public void testEvaluate_countsFunctions() throws Exception {
+        metrics.setEnabled(true);
+
+        final CompiledExpression first = evaluator.compile("sin({0}) + sin({1}) * 3");
+        Assert.assertEquals(Math.sin(1) + Math.sin(2) * 3, first.evaluate(new double[] {1, 2}), EPSILON);
+        final CompiledExpression second = evaluator.compile("{0} * 2");
+        second.evaluate(new double[] {1});
+        second.evaluate(new double[] {2});
+
+        Assert.assertEquals(3, metrics.getEvaluations());
+        Assert.assertEquals(0, metrics.getEvaluationErrors());
+        final Map<String, FunctionStatistics> statistics = byName();
+        Assert.assertEquals(2, statistics.get("sin").getInvocations());
+        Assert.assertEquals(1, statistics.get("+").getInvocations());
+        Assert.assertEquals(3, statistics.get("*").getInvocations());
+        Assert.assertTrue(metrics.getEvaluationTimeNanos() > 0);
+    }
+
+    @Test
+    public void testEvaluate_countsErrors() throws Exception {
+        metrics.setEnabled(true);
+
+        try {
+            evaluator.evaluate("1 +");
+            Assert.fail();
+        } catch (ExpressionExecuteException ex) {
+            // expected
+        }
+        try {
+            evaluator.evaluate("undefined(1)");
+            Assert.fail();
+        } catch (ExpressionExecuteException ex) {
+            // expected
+        }
+
+        Assert.assertEquals(2, metrics.getEvaluationErrors());
+        Assert.assertEquals(1, metrics.getNotEnoughParametersErrors());
+        Assert.assertEquals(1, metrics.getUndefinedFunctionErrors());
+        Assert.assertFalse("rejected before evaluation", byName().containsKey("+"));
+    }
+
+    @Test
+    public void testSetEnabled_instrumentedExpressionStopsCounting() throws Exception {
+        metrics.setEnabled(true);
+        final CompiledExpression compiled = evaluator.compile("sin({0})");
+        compiled.evaluate(new double[] {1});
+        metrics.setEnabled(false);
+        compiled.evaluate(new double[] {1});
+
+        Assert.assertEquals(1, metrics.getEvaluations());
+        Assert.assertEquals(1, byName().get("sin").getInvocations());
+    }
+
+    @Test
+    public void testSetEnabled_notifiesListeners() throws Exception {
+        final int[] calls = {0};
+        metrics.addListener(new Runnable() {
+            @Override
+            public void run() {
+                ++calls[0];
+            }
+        });
+
+        metrics.setEnabled(true);
+        metrics.setEnabled(true);
+        metrics.setEnabled(false);
+
+        Assert.assertEquals(2, calls[0]);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        metrics.setEnabled(true);
+        evaluator.compile("sin({0})").evaluate(new double[] {1});
+
+        metrics.reset();
+
+        Assert.assertEquals(0, metrics.getEvaluations());
+        Assert.assertTrue(metrics.getFunctionStatistics().isEmpty());
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        metrics.setEnabled(true);
+        evaluator.evaluate("1");
+
+        final ObjectName name = metrics.registerMBean();
+        try {
+            Assert.assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Evaluations"));
+            Assert.assertEquals(true, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Enabled"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    private Map<String, FunctionStatistics> byName() {
+        final Map<String, FunctionStatistics> statistics = new HashMap<>();
+        for (final FunctionStatistics function : metrics.getFunctionStatistics()) {
+            statistics.put(function.getName(), function);
+        }
+        return statistics;
+    }
+}
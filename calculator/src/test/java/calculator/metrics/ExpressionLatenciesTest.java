@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.metrics;
+
+import calculator.Calculator;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExpressionLatenciesTest {
+    @Test
+    public void testFingerprint_replacesNumbers() {
+        Assert.assertEquals("sin ( ? ) * ?", ExpressionFingerprint.of("sin(1) * -2.5"));
+        Assert.assertEquals("sin ( ? ) * ?", ExpressionFingerprint.of("sin( 3 )*4"));
+        Assert.assertEquals("max ( {0} , x ) / ?", ExpressionFingerprint.of("max({0},x)/1e3"));
+    }
+
+    @Test
+    public void testFingerprint_bounded() {
+        final StringBuilder expression = new StringBuilder("1");
+        for (int i = 0; i < 1000; ++i) {
+            expression.append("+1");
+        }
+
+        Assert.assertEquals(ExpressionFingerprint.MAX_LENGTH, ExpressionFingerprint.of(expression.toString()).length());
+    }
+
+    @Test
+    public void testRecord_aggregatesByFingerprint() {
+        final ExpressionLatencies latencies = new ExpressionLatencies();
+        latencies.record("1 + 2", 1000);
+        latencies.record("3 + 4", 3000);
+        latencies.record("sin(1)", 2000000);
+
+        final List<ExpressionStatistics> slowest = latencies.getSlowest(10);
+
+        Assert.assertEquals(2, slowest.size());
+        Assert.assertEquals("sin ( ? )", slowest.get(0).getFingerprint());
+        Assert.assertEquals("? + ?", slowest.get(1).getFingerprint());
+        Assert.assertEquals(2, slowest.get(1).getCount());
+        Assert.assertEquals(3000, slowest.get(1).getMaxNanos());
+        Assert.assertEquals(1, latencies.getSlowest(1).size());
+        Assert.assertEquals(3, latencies.getOverall().getCount());
+    }
+
+    @Test
+    public void testRecord_boundedFingerprints() {
+        final ExpressionLatencies latencies = new ExpressionLatencies(4, 2);
+        for (int i = 0; i < 100; ++i) {
+            latencies.record("x" + i + " + 1", 1000);
+        }
+
+        Assert.assertTrue(latencies.getSlowest(100).size() <= 4 + 2);
+        Assert.assertEquals(100, latencies.getOverall().getCount());
+    }
+
+    @Test
+    public void testRecord_slowFingerprintSurvivesFastOnes() {
+        final ExpressionLatencies latencies = new ExpressionLatencies(4, 2);
+        latencies.record("sin(1)", 5000000);
+        for (int i = 0; i < 1000; ++i) {
+            latencies.record("x" + i + " + 1", 1000 + i);
+        }
+        latencies.record("sin(2)", 1000);
+
+        final List<ExpressionStatistics> slowest = latencies.getSlowest(1);
+
+        Assert.assertEquals("sin ( ? )", slowest.get(0).getFingerprint());
+        Assert.assertEquals(2, slowest.get(0).getCount());
+        Assert.assertEquals(5000000, slowest.get(0).getMaxNanos());
+    }
+
+    @Test
+    public void testSlowLog_writesOnlySlowEvaluations() throws Exception {
+        final StringWriter writer = new StringWriter();
+        final SlowExpressionLog log = new SlowExpressionLog(writer, 1, TimeUnit.MILLISECONDS);
+        final ExpressionLatencies latencies = new ExpressionLatencies();
+        latencies.setSlowLog(log);
+
+        latencies.record("1 + 2", 1000);
+        latencies.record("sin(1)", 5000000);
+        log.close();
+
+        final String[] lines = writer.toString().split("\n");
+        Assert.assertEquals(1, lines.length);
+        Assert.assertTrue(lines[0].endsWith("\t5.000 ms\tsin ( ? )\tsin(1)"));
+        Assert.assertEquals(0, log.getDropped());
+    }
+
+    @Test
+    public void testCalculator_recordsWhileMetricsEnabled() throws Exception {
+        final Calculator calculator = new Calculator();
+        calculator.evaluate("1 + 2");
+        calculator.getMetrics().setEnabled(true);
+        calculator.evaluate("3 + 4");
+        calculator.calculate("5 + 6");
+
+        final List<ExpressionStatistics> slowest = calculator.getMetrics().getSlowestExpressions();
+
+        Assert.assertEquals(1, slowest.size());
+        Assert.assertEquals(2, slowest.get(0).getCount());
+    }
+}
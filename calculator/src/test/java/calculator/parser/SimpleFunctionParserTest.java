@@ -25,44 +25,130 @@ package calculator.parser;
 
 import static org.junit.Assert.*;
 
+import calculator.evaluator.CompiledExpression;
 import calculator.evaluator.Evaluator;
+import calculator.evaluator.rpn.RPNEvaluator;
+import calculator.exception.execute.NotEnoughParametersException;
+import calculator.function.DoubleStack;
+import calculator.function.FunctionRepository;
+import calculator.function.rpn.RPNFunctionRepository;
+import calculator.function.rpn.builtin.DoubleConstant;
+import calculator.function.rpn.custom.CompiledFunctionExecutor;
+import calculator.function.rpn.custom.CustomFunction;
 import calculator.function.rpn.custom.FunctionExecutor;
-import java.util.Stack;
-import org.easymock.EasyMock;
-import org.easymock.EasyMockSupport;
 import org.junit.Before;
 import org.junit.Test;
 
 public class SimpleFunctionParserTest {
-    private EasyMockSupport support;
+    private static final double EPSILON = 1e-10;
 
-    private Evaluator evaluatorMock;
+    private FunctionRepository repository;
+
+    private Evaluator evaluator;
 
     private FunctionParser testedObject;
 
     @Before
     public void setUp() {
-        support = new EasyMockSupport();
-        evaluatorMock = support.createMock(Evaluator.class);
-        testedObject = new SimpleFunctionParser(evaluatorMock);
+        repository = new RPNFunctionRepository();
+        evaluator = new RPNEvaluator(repository);
+        testedObject = new SimpleFunctionParser(evaluator);
     }
 
     @Test
     public void testParse() throws Exception {
-        final Stack<Double> stack = new Stack<>();
+        final DoubleStack stack = new DoubleStack();
         stack.push(13.0);
         stack.push(17.0);
 
         final String body = "sin({0})^2 + cos({1})^3";
-        final String processed = "sin(13.0)^2 + cos(17.0)^3";
-
-        EasyMock.expect(evaluatorMock.evaluate(processed)).andStubReturn(Double.NaN);
 
-        support.replayAll();
         FunctionExecutor executor = testedObject.parse(body);
         executor.execute(stack);
-        support.verifyAll();
 
         assertEquals(2, executor.getNumberOfParams());
+        assertEquals(1, stack.size());
+        assertEquals(Math.pow(Math.sin(13.0), 2) + Math.pow(Math.cos(17.0), 3), stack.peek(), EPSILON);
+    }
+
+    @Test
+    public void testExecute_keepsCallerValues() throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        stack.push(100.0);
+        stack.push(3.0);
+
+        testedObject.parse("{0}*{0}").execute(stack);
+
+        assertEquals(2, stack.size());
+        assertEquals(9.0, stack.pop(), EPSILON);
+        assertEquals(100.0, stack.pop(), EPSILON);
+    }
+
+    @Test
+    public void testExecute_exactArguments() throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        stack.push(0.1);
+        stack.push(0.2);
+
+        testedObject.parse("{0}+{1}").execute(stack);
+
+        assertEquals(0.1 + 0.2, stack.peek(), 0.0);
+    }
+
+    @Test
+    public void testExecute_signedParameters() throws Exception {
+        assertEquals(7.0, execute(testedObject.parse("{0}+{0}+1"), 3.0), EPSILON);
+        assertEquals(-6.0, execute(testedObject.parse("2*-{0}"), 3.0), EPSILON);
+        assertEquals(9.0, execute(testedObject.parse("-{0}^2"), 3.0), EPSILON);
+    }
+
+    @Test(expected = NotEnoughParametersException.class)
+    public void testExecute_notEnoughParameters() throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        stack.push(1.0);
+
+        testedObject.parse("{0}+{1}").execute(stack);
+    }
+
+    @Test
+    public void testExecute_lateBinding() throws Exception {
+        final FunctionExecutor executor = testedObject.parse("2*double({0})");
+        repository.update("double", new CustomFunction(testedObject.parse("{0}*2")));
+
+        assertEquals(12.0, execute(executor, 3.0), EPSILON);
+
+        repository.update("double", new CustomFunction(testedObject.parse("{0}+{0}+1")));
+        assertEquals(14.0, execute(executor, 3.0), EPSILON);
+    }
+
+    @Test
+    public void testExecute_constantRedefined() throws Exception {
+        final FunctionExecutor executor = testedObject.parse("K*{0}");
+        repository.update("K", new DoubleConstant(2.0));
+        assertEquals(6.0, execute(executor, 3.0), EPSILON);
+
+        repository.update("K", new DoubleConstant(5.0));
+        assertEquals(15.0, execute(executor, 3.0), EPSILON);
+    }
+
+    @Test
+    public void testInvalidateAll_recompilesBodies() throws Exception {
+        final CompiledFunctionExecutor executor = (CompiledFunctionExecutor) testedObject.parse("{0}*2");
+        final CompiledExpression program = executor.getProgram();
+        assertSame(program, executor.getProgram());
+
+        ((SimpleFunctionParser) testedObject).invalidateAll();
+
+        assertNotSame(program, executor.getProgram());
+        assertEquals(6.0, execute(executor, 3.0), EPSILON);
+    }
+
+    private double execute(final FunctionExecutor executor, final double... args) throws Exception {
+        final DoubleStack stack = new DoubleStack();
+        for (final double arg : args) {
+            stack.push(arg);
+        }
+        executor.execute(stack);
+        return stack.pop();
     }
 }
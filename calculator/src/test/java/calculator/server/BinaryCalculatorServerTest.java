@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import calculator.Calculator;
+import calculator.evaluator.CompiledExpression;
+import calculator.exception.execute.ExpressionExecuteException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryCalculatorServerTest {
+    private static final double EPSILON = 1e-10;
+
+    private BinaryCalculatorServer server;
+
+    private BinaryCalculatorClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new BinaryCalculatorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                new Calculator() {
+                    @Override
+                    public CompiledExpression tryCompile(final String expression) {
+                        if ("crash".equals(expression)) {
+                            throw new IllegalStateException(expression);
+                        }
+                        return super.tryCompile(expression);
+                    }
+                });
+        server.start();
+        client = connect();
+    }
+
+    private BinaryCalculatorClient connect() throws IOException {
+        return new BinaryCalculatorClient(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getAddress().getPort()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testEvaluate() throws Exception {
+        Assert.assertEquals(7.0, client.evaluate("1 + 2 * 3"), EPSILON);
+        Assert.assertEquals(7.0, client.evaluate("1 + 2 * 3"), EPSILON);
+        Assert.assertEquals(Math.sin(1), client.evaluate("sin(1)"), EPSILON);
+    }
+
+    @Test(expected = ExpressionExecuteException.class)
+    public void testEvaluate_error() throws Exception {
+        client.evaluate("1 +");
+    }
+
+    @Test
+    public void testEvaluate_undefinedFunction() throws Exception {
+        client.send("foo(2)");
+        final BinaryCalculatorClient.Response response = client.receive();
+        Assert.assertTrue(response.getError(), response.getError().contains("FunctionNotDefinedException foo"));
+    }
+
+    @Test
+    public void testEvaluate_uncheckedFailureClosesOnlyConnection() throws Exception {
+        try (BinaryCalculatorClient other = connect()) {
+            client.send("crash");
+            try {
+                client.receive();
+                Assert.fail();
+            } catch (IOException ex) {
+                // connection closed by the server
+            }
+            Assert.assertEquals(3.0, other.evaluate("1 + 2"), EPSILON);
+        }
+        try (BinaryCalculatorClient next = connect()) {
+            Assert.assertEquals(4.0, next.evaluate("2 + 2"), EPSILON);
+        }
+    }
+
+    @Test
+    public void testEvaluate_pipelinedInOrder() throws Exception {
+        final int count = 20000;
+        for (int i = 0; i < count; ++i) {
+            client.send(i % 10 == 0 ? "undefined(" + i + ")" : i + " * 2");
+        }
+        for (int i = 0; i < count; ++i) {
+            final BinaryCalculatorClient.Response response = client.receive();
+            if (i % 10 == 0) {
+                Assert.assertTrue(response.isError());
+            } else {
+                Assert.assertFalse(response.isError());
+                Assert.assertEquals(i * 2.0, response.getValue(), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluate_frameLargerThanBuffers() throws Exception {
+        final StringBuilder expression = new StringBuilder("0");
+        for (int i = 0; i < 30000; ++i) {
+            expression.append(" + 1");
+        }
+        Assert.assertEquals(30000.0, client.evaluate(expression.toString()), EPSILON);
+        Assert.assertEquals(2.0, client.evaluate("1 + 1"), EPSILON);
+    }
+
+    @Test
+    public void testLoadTest() throws Exception {
+        final BinaryLoadTest.Result result = new BinaryLoadTest(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getAddress().getPort()), 2, 1000, 64)
+                .run("1 + 2");
+
+        Assert.assertEquals(2000, result.getRequests());
+        Assert.assertEquals(0, result.getErrors());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CalculatorHttpServerTest {
+    private CalculatorHttpServer server;
+
+    private URL url;
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty(CalculatorHttpServer.NO_DELAY_PROPERTY, "true");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new CalculatorHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        url = new URL("http", "127.0.0.1", server.getAddress().getPort(), CalculatorHttpServer.EVALUATE_PATH);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testEvaluate_text() throws Exception {
+        final String response = post("t", "text/plain", "1+2\n\n2*{0}\r\n:func f {0}*2\nf(3)\n");
+
+        Assert.assertTrue(response, response.startsWith("3.0\nerror: "));
+        Assert.assertTrue(response, response.endsWith("\n6.0\n"));
+    }
+
+    @Test
+    public void testEvaluate_json() throws Exception {
+        Assert.assertEquals("[{\"value\":3.0}]", post(null, "application/json", "\"1+2\""));
+        final String response = post("j", "application/json; charset=utf-8",
+                "[\"0/0\", \":const c 2\", \"c\\u002a3\", \"1+\"]");
+
+        Assert.assertTrue(response, response.startsWith(
+                "[{\"value\":\"NaN\"},{\"output\":null},{\"value\":6.0},{\"error\":\""));
+    }
+
+    @Test
+    public void testEvaluate_sessionsAreIsolated() throws Exception {
+        post("a", "text/plain", ":const c 1");
+        post("b", "text/plain", ":const c 2");
+
+        Assert.assertEquals("1.0\n", post("a", "text/plain", "c"));
+        Assert.assertEquals("2.0\n", post("b", "text/plain", "c"));
+        Assert.assertTrue(post(null, "text/plain", "c").startsWith("error: "));
+        Assert.assertEquals(2, server.getSessionCount());
+    }
+
+    @Test
+    public void testEvaluate_anonymousCannotChangeDefinitions() throws Exception {
+        for (final String command : new String[] {":func f {0}", ":const c 1", ":s c", ":del c", ":c", ":ce",
+                ":stats on"}) {
+            Assert.assertTrue(command, post(null, "text/plain", command).startsWith("error: "));
+        }
+        Assert.assertFalse(post(null, "text/plain", ":p").startsWith("error: "));
+        Assert.assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    public void testEvaluate_sessionSavesLastResult() throws Exception {
+        Assert.assertEquals("6.0\n12.0\n", post("a", "text/plain", "2*3\nans*2"));
+        post("a", "text/plain", ":s x");
+        Assert.assertEquals("24.0\n", post("a", "text/plain", "x * 2"));
+    }
+
+    @Test
+    public void testEvaluate_badRequests() throws Exception {
+        Assert.assertEquals(400, status("POST", "application/json", "[1]"));
+        Assert.assertEquals(405, status("GET", null, null));
+    }
+
+    @Test
+    public void testLoadTest() throws Exception {
+        final LatencyReport report = new HttpLoadTest(url, 4, 25).run("text/plain", "1+2");
+
+        Assert.assertEquals(100, report.getRequests());
+        Assert.assertEquals(0, report.getFailures());
+        Assert.assertTrue(report.getPercentile(50, TimeUnit.NANOSECONDS) <=
+                report.getPercentile(99, TimeUnit.NANOSECONDS));
+    }
+
+    private String post(final String session, final String contentType, final String body) throws IOException {
+        final HttpURLConnection connection = open("POST", contentType, body, session);
+        Assert.assertEquals(200, connection.getResponseCode());
+        try (InputStream input = connection.getInputStream()) {
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                response.write(buffer, 0, read);
+            }
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private int status(final String method, final String contentType, final String body) throws IOException {
+        final HttpURLConnection connection = open(method, contentType, body, null);
+        final int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    private HttpURLConnection open(final String method, final String contentType, final String body,
+            final String session) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (session != null) {
+            connection.setRequestProperty(CalculatorHttpServer.SESSION_HEADER, session);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+}
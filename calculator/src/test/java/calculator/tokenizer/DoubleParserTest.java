@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.tokenizer;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DoubleParserTest {
+    @Test
+    public void testParse_sameAsJdk() throws Exception {
+        final String[] inputs = {
+            "0", "0.0", "000", "0e400", "1", "-1", "+2.5", "1.", ".5", "00.0012", "123456789", "3.141592653589793",
+            "9007199254740992", "9007199254740993", "9007199254740995", "9999999999999999999",
+            "18446744073709551615", "123456789012345678901234567890", "0.1", "0.30000000000000004",
+            "1e22", "1e23", "1e308", "1.7976931348623157e308", "1.7976931348623158e308", "1.8e308", "1e400",
+            "2.2250738585072014e-308", "2.2250738585072011e-308", "4.9e-324", "2.4e-324", "1e-400",
+            "2.5e-5f", "7D", "1e+5", "1e-5", "1.0000000000000000000000000000000001", "0.9999999999999999999999999999999999",
+            "7.2057594037927933e16", "2.0000000000000004440892098500626", "2.00000000000000044408920985006261",
+            "179769313486231580793728971405301e276", "0x1p3", "NaN", "Infinity", " 1 ",
+        };
+        for (final String input : inputs) {
+            checkParse(input);
+        }
+    }
+
+    @Test
+    public void testParse_randomLiterals() throws Exception {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; ++i) {
+            final double value = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            checkParse(Double.toString(value));
+            checkParse(new BigDecimal(value).toString());
+            if (i % 16 == 0) {
+                checkParse(new BigDecimal(value).toPlainString());
+            }
+            final StringBuilder digits = new StringBuilder();
+            for (int j = random.nextInt(30); j >= 0; --j) {
+                digits.append(random.nextInt(10));
+            }
+            digits.insert(random.nextInt(digits.length() + 1), '.');
+            checkParse(digits + "e" + (random.nextInt(660) - 330));
+        }
+    }
+
+    @Test
+    public void testParse_range() throws Exception {
+        Assert.assertEquals(2.5, DoubleParser.parse("sin(2.5)", 4, 7), 0);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParse_notANumber() throws Exception {
+        DoubleParser.parse("1e");
+    }
+
+    private static void checkParse(final String input) {
+        if (input.endsWith(".e0")) {
+            return;
+        }
+        Assert.assertEquals(input, Double.doubleToLongBits(Double.parseDouble(input)),
+                Double.doubleToLongBits(DoubleParser.parse(input)));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Marcin Zarebski <zarebski.m[AT]gmail.com>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package calculator.tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExpressionScannerTest {
+    @Test
+    public void testNext_kindsAndRanges() throws Exception {
+        final ExpressionScanner scanner = new ExpressionScanner("sin( - 2.5,{1})");
+        checkToken(scanner, ExpressionScanner.Kind.Symbol, 0, 3);
+        checkToken(scanner, ExpressionScanner.Kind.OpenBracket, 3, 4);
+        checkToken(scanner, ExpressionScanner.Kind.Number, 7, 10);
+        Assert.assertTrue(scanner.isNegated());
+        Assert.assertEquals("-2.5", scanner.getText());
+        checkToken(scanner, ExpressionScanner.Kind.Comma, 10, 11);
+        checkToken(scanner, ExpressionScanner.Kind.Parameter, 11, 14);
+        Assert.assertEquals(1, scanner.getParameterIndex());
+        checkToken(scanner, ExpressionScanner.Kind.ClosedBracket, 14, 15);
+        Assert.assertFalse(scanner.next());
+    }
+
+    @Test
+    public void testNext_sameTokensAsSimpleTokenizer() throws Exception {
+        final String[] inputs = {
+            "1.2", "1+2 *-3", "1+2*3-A(B(1.2^-3.4/+5.6\t% C123( 0,9, 1 ,5)))", "{0}+1*-{1}", "", "  \n ",
+            "2 - -3", "--3", "-3-4", "x-1", "x - 1", "(2)-3", "f(1)+2", "-x", "+ {0}", "{12}+{1a}", "1e5*1E+5",
+            "1e-5", "0x1p3-0X.8P1", "0x1p", "1d+2F-3.f", "1dd", ".5+5.", ".", "e5", "NaN-Infinity", "-NaN",
+            "1.2.3", "#-1", "\u00012-1", "a_b1 + ab%2", "1 - - 2", "-(-1)", "--{0}-{0}",
+        };
+        for (final String input : inputs) {
+            final ExpressionTokenizer tokenizer = new SimpleExpressionTokenizer(input);
+            final List<String> expected = new ArrayList<>();
+            while (tokenizer.hasNextToken()) {
+                expected.add(tokenizer.getNextToken());
+            }
+
+            final ExpressionScanner scanner = new ExpressionScanner(input);
+            final List<String> result = new ArrayList<>();
+            while (scanner.next()) {
+                result.add(scanner.getText());
+                Assert.assertEquals(input, isNumeric(scanner.getText()), scanner.getKind() ==
+                        ExpressionScanner.Kind.Number || scanner.getKind() == ExpressionScanner.Kind.Parameter);
+            }
+            Assert.assertEquals(input, expected, result);
+        }
+    }
+
+    private static boolean isNumeric(final String token) {
+        if (token.matches("[+-]?\\{\\d\\}")) {
+            return true;
+        }
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static void checkToken(final ExpressionScanner scanner, final ExpressionScanner.Kind kind,
+            final int start, final int end) {
+        Assert.assertTrue(scanner.next());
+        Assert.assertEquals(kind, scanner.getKind());
+        Assert.assertEquals(start, scanner.getStart());
+        Assert.assertEquals(end, scanner.getEnd());
+    }
+}
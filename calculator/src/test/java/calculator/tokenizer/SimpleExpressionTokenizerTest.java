@@ -49,6 +49,12 @@ public class SimpleExpressionTokenizerTest {
                 "%", "C123", "(", "0", ",", "9", ",", "1", ",", "5", ")", ")", ")");
     }
 
+    @Test
+    public void testGetNextToken_parameters() throws Exception {
+        final String input = "{0}+1*-{1}";
+        checkTokenizer(input, "{0}", "+", "1", "*", "-{1}");
+    }
+
     private void checkTokenizer(final String input, final String... strings) {
         final List<String> expected = Arrays.asList(strings);
 